@@ -31,4 +31,4 @@ CREATE TABLE Appointments (
     Caregiver_Username varchar(255) REFERENCES Caregivers(Username),
     Vaccine_name varchar(255) REFERENCES Vaccines(Name),
     PRIMARY KEY(Appointment_ID)
-);
\ No newline at end of file
+);
@@ -0,0 +1,4 @@
+-- a request key is bound to the command it was first sent with, by a SHA-256 hash of the command's text;
+-- keys recorded before have no hash
+ALTER TABLE Request_Keys ADD Command_Hash char(64) NULL;
+GO
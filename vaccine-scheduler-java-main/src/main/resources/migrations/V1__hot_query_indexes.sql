@@ -0,0 +1,29 @@
+-- Request_Keys was added to create.sql after the first deployments, so create it where it is missing
+IF OBJECT_ID('Request_Keys') IS NULL
+CREATE TABLE Request_Keys (
+    Username varchar(255),
+    Request_Key varchar(255),
+    Result varchar(max),
+    Created datetime2,
+    PRIMARY KEY (Username, Request_Key)
+);
+GO
+
+-- show_appointments for a patient and the appointment list printed by reserve
+CREATE INDEX IX_Appointments_Patient ON Appointments (Patient_Username, Appointment_ID)
+    INCLUDE (Appointment_time, Caregiver_Username, Vaccine_name);
+GO
+
+-- show_appointments for a caregiver
+CREATE INDEX IX_Appointments_Caregiver ON Appointments (Caregiver_Username, Appointment_ID)
+    INCLUDE (Appointment_time, Patient_Username, Vaccine_name);
+GO
+
+-- the date range scan of the capacity report
+CREATE INDEX IX_Appointments_Time ON Appointments (Appointment_time)
+    INCLUDE (Caregiver_Username, Vaccine_name);
+GO
+
+-- purging expired idempotency keys
+CREATE INDEX IX_Request_Keys_Created ON Request_Keys (Created);
+GO
@@ -0,0 +1,3 @@
+-- reserve already guards the decrement, this makes an oversell impossible from any client
+ALTER TABLE Vaccines WITH CHECK ADD CONSTRAINT CK_Vaccines_Doses CHECK (Doses >= 0);
+GO
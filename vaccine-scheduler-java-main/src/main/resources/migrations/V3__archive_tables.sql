@@ -0,0 +1,29 @@
+-- past appointments and availability are moved here by the archival job; the tables are clustered
+-- by date so each archived day is one contiguous, page-compressed range
+CREATE TABLE Appointments_Archive (
+    Appointment_ID int PRIMARY KEY NONCLUSTERED,
+    Appointment_time date,
+    Patient_Username varchar(255),
+    Caregiver_Username varchar(255),
+    Vaccine_name varchar(255)
+);
+GO
+
+CREATE CLUSTERED INDEX CX_Appointments_Archive_Time ON Appointments_Archive (Appointment_time, Appointment_ID)
+    WITH (DATA_COMPRESSION = PAGE);
+GO
+
+CREATE INDEX IX_Appointments_Archive_Patient ON Appointments_Archive (Patient_Username, Appointment_ID)
+    INCLUDE (Appointment_time, Caregiver_Username, Vaccine_name) WITH (DATA_COMPRESSION = PAGE);
+GO
+
+CREATE INDEX IX_Appointments_Archive_Caregiver ON Appointments_Archive (Caregiver_Username, Appointment_ID)
+    INCLUDE (Appointment_time, Patient_Username, Vaccine_name) WITH (DATA_COMPRESSION = PAGE);
+GO
+
+CREATE TABLE Availabilities_Archive (
+    Time date,
+    Username varchar(255),
+    PRIMARY KEY (Time, Username) WITH (DATA_COMPRESSION = PAGE)
+);
+GO
@@ -0,0 +1,10 @@
+-- every vaccine is a series; single-dose vaccines are a series of one
+ALTER TABLE Vaccines ADD
+    Series_Doses int NOT NULL CONSTRAINT DF_Vaccines_Series_Doses DEFAULT 1,
+    Min_Interval_Days int NOT NULL CONSTRAINT DF_Vaccines_Min_Interval DEFAULT 0,
+    Max_Interval_Days int NOT NULL CONSTRAINT DF_Vaccines_Max_Interval DEFAULT 0;
+GO
+
+ALTER TABLE Vaccines ADD CONSTRAINT CK_Vaccines_Series
+    CHECK (Series_Doses >= 1 AND Min_Interval_Days >= 0 AND Max_Interval_Days >= Min_Interval_Days);
+GO
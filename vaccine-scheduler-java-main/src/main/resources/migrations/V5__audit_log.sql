@@ -0,0 +1,18 @@
+-- who booked, cancelled or changed doses; written in batches by the audit writer
+CREATE TABLE Audit_Log (
+    Audit_ID bigint IDENTITY(1, 1) PRIMARY KEY,
+    Event_time datetime2(3) NOT NULL,
+    Actor varchar(255) NOT NULL,
+    Action varchar(64) NOT NULL,
+    Detail varchar(1000) NULL
+) WITH (DATA_COMPRESSION = PAGE);
+GO
+
+-- the log is append-only: rows can be inserted but never changed or removed
+CREATE TRIGGER TR_Audit_Log_Append_Only ON Audit_Log
+INSTEAD OF UPDATE, DELETE
+AS
+BEGIN
+    THROW 50000, 'Audit_Log is append-only', 1;
+END;
+GO
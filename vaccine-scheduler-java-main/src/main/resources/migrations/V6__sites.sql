@@ -0,0 +1,19 @@
+-- vaccination sites; a caregiver's availability on a day may name the site they work at
+CREATE TABLE Sites (
+    Site_ID int IDENTITY(1, 1) PRIMARY KEY,
+    Name varchar(255) NOT NULL CONSTRAINT UQ_Sites_Name UNIQUE,
+    Latitude float NOT NULL,
+    Longitude float NOT NULL,
+    CONSTRAINT CK_Sites_Coordinates CHECK (Latitude BETWEEN -90 AND 90 AND Longitude BETWEEN -180 AND 180)
+);
+GO
+
+ALTER TABLE Availabilities ADD Site_ID int NULL CONSTRAINT FK_Availabilities_Site REFERENCES Sites (Site_ID);
+GO
+
+ALTER TABLE Availabilities_Archive ADD Site_ID int NULL;
+GO
+
+-- search_nearest seeks each nearby site's upcoming days
+CREATE INDEX IX_Availabilities_Site_Time ON Availabilities (Site_ID, Time) INCLUDE (Username);
+GO
@@ -0,0 +1,8 @@
+-- bound the dose series, so the days a series spans always fit the search for its slots
+ALTER TABLE Vaccines DROP CONSTRAINT CK_Vaccines_Series;
+GO
+
+ALTER TABLE Vaccines ADD CONSTRAINT CK_Vaccines_Series
+    CHECK (Series_Doses BETWEEN 1 AND 10 AND Min_Interval_Days >= 0 AND Max_Interval_Days >= Min_Interval_Days
+        AND Max_Interval_Days <= 365);
+GO
@@ -0,0 +1,19 @@
+-- request keys are scoped by role, since a patient and a caregiver may have the same username. The table
+-- only holds keys of retries still in flight, which expire within a day, so it is recreated rather than
+-- converted; a key lost here at worst lets one retry run again.
+DROP TABLE IF EXISTS Request_Keys;
+GO
+
+CREATE TABLE Request_Keys (
+    Role varchar(16) NOT NULL,
+    Username varchar(255) NOT NULL,
+    Request_Key varchar(255) NOT NULL,
+    Result varchar(max),
+    Created datetime2,
+    CONSTRAINT PK_Request_Keys PRIMARY KEY (Role, Username, Request_Key)
+);
+GO
+
+-- purging expired idempotency keys
+CREATE INDEX IX_Request_Keys_Created ON Request_Keys (Created);
+GO
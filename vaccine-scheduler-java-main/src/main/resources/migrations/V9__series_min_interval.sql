@@ -0,0 +1,14 @@
+-- doses of a series must be on different days. Series defined before this had no such rule, so they are
+-- moved to the closest series that follows it.
+UPDATE Vaccines SET Min_Interval_Days = 1, Max_Interval_Days = CASE WHEN Max_Interval_Days < 1 THEN 1
+    ELSE Max_Interval_Days END
+WHERE Series_Doses > 1 AND Min_Interval_Days < 1;
+GO
+
+ALTER TABLE Vaccines DROP CONSTRAINT CK_Vaccines_Series;
+GO
+
+ALTER TABLE Vaccines ADD CONSTRAINT CK_Vaccines_Series
+    CHECK (Series_Doses BETWEEN 1 AND 10 AND Min_Interval_Days >= 0 AND Max_Interval_Days >= Min_Interval_Days
+        AND Max_Interval_Days <= 365 AND (Series_Doses = 1 OR Min_Interval_Days >= 1));
+GO
@@ -1,9 +1,35 @@
 package scheduler;
 
+import scheduler.admission.AdmissionControl;
+import scheduler.assign.AssignmentStrategy;
+import scheduler.audit.AuditLog;
+import scheduler.assign.BookingCounters;
+import scheduler.assign.SeriesSlotSearch;
+import scheduler.bulk.BulkExporter;
+import scheduler.bulk.BulkImporter;
 import scheduler.db.ConnectionManager;
+import scheduler.db.ConnectionPool;
+import scheduler.db.IdempotencyStore;
+import scheduler.db.Transactions;
+import scheduler.error.DuplicateKeyException;
+import scheduler.error.ErrorCounters;
+import scheduler.error.InsufficientDosesException;
+import scheduler.error.InvalidInputException;
+import scheduler.error.NotFoundException;
+import scheduler.error.SchedulerException;
+import scheduler.error.SqlErrors;
+import scheduler.geo.SiteIndex;
+import scheduler.hold.Hold;
+import scheduler.hold.HoldManager;
+import scheduler.lifecycle.Lifecycle;
 import scheduler.model.Caregiver;
 import scheduler.model.Patient;
+import scheduler.model.Site;
 import scheduler.model.Vaccine;
+import scheduler.notify.ScheduleBus;
+import scheduler.report.CapacityReport;
+import scheduler.util.LoginRateLimiter;
+import scheduler.util.SessionToken;
 import scheduler.util.Util;
 
 import java.io.BufferedReader;
@@ -14,17 +40,45 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Date;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 public class Scheduler {
 
-    // objects to keep track of the currently logged-in user
-    // Note: it is always true that at most one of currentCaregiver and currentPatient is not null
-    //       since only one user can be logged-in at a time
-    private static Caregiver currentCaregiver = null;
-    private static Patient currentPatient = null;
-    private static int numAppointments = 1;
+    // per-day booking counts of this process, and the strategy that uses them to spread reservations
+    private static final BookingCounters bookingCounters = new BookingCounters();
+    private static final AssignmentStrategy assignmentStrategy =
+            AssignmentStrategy.fromName(System.getenv("AssignmentStrategy"), bookingCounters);
+
+    // suffixes that let a single command authenticate with a session token or carry an idempotency key
+    private static final String TOKEN_FLAG = "--token=";
+    private static final String KEY_FLAG = "--key=";
+    // the first dose of a series is booked at most this many days after the requested date
+    private static final int SERIES_SEARCH_DAYS = 60;
+    private static final int MAX_SERIES_HORIZON_DAYS =
+            SERIES_SEARCH_DAYS + (Vaccine.MAX_SERIES_DOSES - 1) * Vaccine.MAX_INTERVAL_DAYS;
+    // search_nearest looks this many days ahead and lists this many slots unless asked for another count
+    private static final int NEAREST_SEARCH_DAYS = 60;
+    private static final int DEFAULT_NEAREST_COUNT = 5;
+    private static final int MAX_NEAREST_COUNT = 50;
 
     public static void main(String[] args) throws SQLException {
+        // bring the schema up to date and warm up the connection pool before serving any command
+        try {
+            Lifecycle.start();
+        } catch (SQLException e) {
+            System.out.println("Error occurred when starting up");
+            reportError(e);
+            return;
+        }
+
         // printing greetings text
         System.out.println();
         System.out.println("Welcome to the COVID-19 Vaccine Reservation Scheduling Application!");
@@ -35,15 +89,34 @@ public class Scheduler {
         System.out.println("> login_caregiver <username> <password>");
         System.out.println("> search_caregiver_schedule <date>");
         System.out.println("> reserve <date> <vaccine>");
-        System.out.println("> upload_availability <date>");
+        System.out.println("> reserve_series <date> <vaccine>");
+        System.out.println("> hold <date> <vaccine>");
+        System.out.println("> confirm <hold_id>");
+        System.out.println("> release <hold_id>");
+        System.out.println("> upload_availability <date> [site]");
+        System.out.println("> add_site <name> <latitude> <longitude>");
+        System.out.println("> search_nearest <latitude> <longitude> <vaccine> <radius_km> [count]");
         System.out.println("> cancel <appointment_id>");
         System.out.println("> add_doses <vaccine> <number>");
-        System.out.println("> show_appointments");
+        System.out.println("> set_series <vaccine> <doses> <min_interval_days> <max_interval_days>");
+        System.out.println("> show_appointments [recent]");
+        System.out.println("> subscribe <schedule | <date> <vaccine>>");
+        System.out.println("> unsubscribe");
+        System.out.println("> report <from> <to>");
+        System.out.println("> error_stats");
+        System.out.println("> health");
+        System.out.println("> import <patients|caregivers|availabilities|doses> <file>");
+        System.out.println("> export <appointments|availabilities|doses> <file>");
+        System.out.println("> resume <token>");
         System.out.println("> logout");
         System.out.println("> quit");
+        System.out.println("Any command may end with --token=<token> to run it as the token's user");
+        System.out.println("reserve, reserve_series and add_doses may end with --key=<key> so that retrying them is safe");
+        System.out.println("Notifications of subscribe are shown after your next command, of any kind");
         System.out.println();
 
         // read input from user
+        Session session = new Session(System.out);
         BufferedReader r = new BufferedReader(new InputStreamReader(System.in));
         while (true) {
             System.out.print("> ");
@@ -53,6 +126,12 @@ public class Scheduler {
             } catch (IOException e) {
                 System.out.println("Please try again!");
             }
+            // the input has ended, e.g. Ctrl-D or a closed pipe
+            if (response == null) {
+                session.close();
+                System.out.println("Bye!");
+                return;
+            }
             // split the user input by spaces
             String[] tokens = response.split(" ");
             // check if input exists
@@ -60,78 +139,234 @@ public class Scheduler {
                 System.out.println("Please try again!");
                 continue;
             }
-            // determine which operation to perform
-            String operation = tokens[0];
-            if (operation.equals("create_patient")) {
-                createPatient(tokens);
-            } else if (operation.equals("create_caregiver")) {
-                createCaregiver(tokens);
-            } else if (operation.equals("login_patient")) {
-                loginPatient(tokens);
-            } else if (operation.equals("login_caregiver")) {
-                loginCaregiver(tokens);
-            } else if (operation.equals("search_caregiver_schedule")) {
-                searchCaregiverSchedule(tokens);
-            } else if (operation.equals("reserve")) {
-                reserve(tokens);
-            } else if (operation.equals("upload_availability")) {
-                uploadAvailability(tokens);
-            } else if (operation.equals("cancel")) {
-                cancel(tokens);
-            } else if (operation.equals("add_doses")) {
-                addDoses(tokens);
-            } else if (operation.equals("show_appointments")) {
-                showAppointments(tokens);
-            } else if (operation.equals("logout")) {
-                logout(tokens);
-            } else if (operation.equals("quit")) {
-                System.out.println("Bye!");
-                return;
+            // run the command, possibly on behalf of the user named in a session token
+            try {
+                if (!execute(session, tokens)) {
+                    session.close();
+                    System.out.println("Bye!");
+                    return;
+                }
+            } catch (SQLException e) {
+                // e.g. the database is unreachable during a failover; the next command may succeed
+                System.out.println("Please try again!");
+                reportError(e);
+            }
+        }
+    }
+
+    public static boolean execute(Session session, String[] tokens) throws SQLException {
+        // once shutdown has begun no new command starts, so the ones in flight can drain
+        if (!Lifecycle.enter()) {
+            session.out.println("Shutting down, please try again later!");
+            return false;
+        }
+        try {
+            return executeWithOptions(session, tokens);
+        } catch (RuntimeException e) {
+            // a bug in one command must not take the whole process down with it
+            session.out.println("Error occurred when running the command, please try again!");
+            e.printStackTrace();
+            return true;
+        } finally {
+            Lifecycle.exit();
+            // deliver the schedule changes that arrived since the last command
+            for (String notification : session.mailbox.drain()) {
+                session.out.println("Notification: " + notification);
+            }
+        }
+    }
+
+    private static boolean executeWithOptions(Session session, String[] tokens) throws SQLException {
+        // trailing --token=<token> and --key=<key> options apply to just this command
+        String tokenOption = null;
+        String keyOption = null;
+        int length = tokens.length;
+        while (length > 1) {
+            String last = tokens[length - 1];
+            if (last.startsWith(TOKEN_FLAG) && tokenOption == null) {
+                tokenOption = last.substring(TOKEN_FLAG.length());
+            } else if (last.startsWith(KEY_FLAG) && keyOption == null) {
+                keyOption = last.substring(KEY_FLAG.length());
             } else {
-                System.out.println("Invalid operation name!");
+                break;
             }
+            length--;
+        }
+        if (keyOption != null && keyOption.isEmpty()) {
+            session.out.println("Please try again!");
+            return true;
+        }
+        if (tokenOption == null) {
+            return executeWithKey(session, Arrays.copyOf(tokens, length), keyOption);
+        }
+        // the token authenticates the command without touching the database
+        SessionToken token = SessionToken.verify(tokenOption);
+        if (token == null) {
+            session.out.println("Invalid or expired session token!");
+            return true;
+        }
+        Caregiver savedCaregiver = session.caregiver;
+        Patient savedPatient = session.patient;
+        try {
+            restoreSession(session, token);
+            return executeWithKey(session, Arrays.copyOf(tokens, length), keyOption);
+        } finally {
+            session.caregiver = savedCaregiver;
+            session.patient = savedPatient;
+        }
+    }
+
+    private static boolean executeWithKey(Session session, String[] tokens, String key) throws SQLException {
+        // shed load before the command reaches the database, once its user is known
+        AdmissionControl.Lane lane = admissionLane(session, tokens[0]);
+        long retryAfter = AdmissionControl.enter(lane, admissionUser(session));
+        if (retryAfter > 0) {
+            session.out.println("Server busy, please retry after " + (retryAfter + 999) / 1000 + " seconds!");
+            return true;
+        }
+        session.requestKey = key;
+        session.requestCommand = String.join(" ", tokens);
+        try {
+            return dispatch(session, tokens);
+        } finally {
+            session.requestKey = null;
+            session.requestCommand = null;
+            AdmissionControl.exit(lane);
         }
     }
 
-    private static void createPatient(String[] tokens) throws SQLException {
+    private static AdmissionControl.Lane admissionLane(Session session, String operation) {
+        // operator commands, and ones that only change the session, are never turned away
+        if (operation.equals("health") || operation.equals("error_stats") || operation.equals("logout") ||
+                operation.equals("unsubscribe") || operation.equals("quit")) {
+            return AdmissionControl.Lane.ADMIN;
+        }
+        // only a caregiver who has authenticated gets the caregivers' lane; anyone can claim to be one by name
+        if (session.caregiver != null) {
+            return AdmissionControl.Lane.CAREGIVER;
+        }
+        return AdmissionControl.Lane.PATIENT;
+    }
+
+    // Whose rate a command counts against: the logged-in user, or else the session. A username named in a login
+    // is not trusted, or failed guesses under someone's name would use up that user's rate.
+    private static String admissionUser(Session session) {
+        if (session.caregiver != null) {
+            return SessionToken.CAREGIVER + ":" + session.caregiver.getUsername();
+        }
+        if (session.patient != null) {
+            return SessionToken.PATIENT + ":" + session.patient.getUsername();
+        }
+        return "session:" + session.id;
+    }
+
+    private static boolean dispatch(Session session, String[] tokens) throws SQLException {
+        // determine which operation to perform
+        String operation = tokens[0];
+        if (operation.equals("create_patient")) {
+            createPatient(session, tokens);
+        } else if (operation.equals("create_caregiver")) {
+            createCaregiver(session, tokens);
+        } else if (operation.equals("login_patient")) {
+            loginPatient(session, tokens);
+        } else if (operation.equals("login_caregiver")) {
+            loginCaregiver(session, tokens);
+        } else if (operation.equals("search_caregiver_schedule")) {
+            searchCaregiverSchedule(session, tokens);
+        } else if (operation.equals("reserve")) {
+            reserve(session, tokens);
+        } else if (operation.equals("reserve_series")) {
+            reserveSeries(session, tokens);
+        } else if (operation.equals("hold")) {
+            hold(session, tokens);
+        } else if (operation.equals("confirm")) {
+            confirm(session, tokens);
+        } else if (operation.equals("release")) {
+            release(session, tokens);
+        } else if (operation.equals("upload_availability")) {
+            uploadAvailability(session, tokens);
+        } else if (operation.equals("add_site")) {
+            addSite(session, tokens);
+        } else if (operation.equals("search_nearest")) {
+            searchNearest(session, tokens);
+        } else if (operation.equals("cancel")) {
+            cancel(session, tokens);
+        } else if (operation.equals("add_doses")) {
+            addDoses(session, tokens);
+        } else if (operation.equals("set_series")) {
+            setSeries(session, tokens);
+        } else if (operation.equals("show_appointments")) {
+            showAppointments(session, tokens);
+        } else if (operation.equals("subscribe")) {
+            subscribe(session, tokens);
+        } else if (operation.equals("unsubscribe")) {
+            unsubscribe(session, tokens);
+        } else if (operation.equals("error_stats")) {
+            errorStats(session, tokens);
+        } else if (operation.equals("health")) {
+            health(session, tokens);
+        } else if (operation.equals("report")) {
+            report(session, tokens);
+        } else if (operation.equals("import")) {
+            importCsv(session, tokens);
+        } else if (operation.equals("export")) {
+            exportCsv(session, tokens);
+        } else if (operation.equals("resume")) {
+            resume(session, tokens);
+        } else if (operation.equals("logout")) {
+            logout(session, tokens);
+        } else if (operation.equals("quit")) {
+            return false;
+        } else {
+            session.out.println("Invalid operation name!");
+        }
+        return true;
+    }
+
+    private static void createPatient(Session session, String[] tokens) throws SQLException {
         // create_patient <username> <password>
         // check 1: the length for tokens need to be exactly 3 to include all information (with the operation name)
         if (tokens.length != 3) {
-            System.out.println("Failed to create user.");
+            session.out.println("Failed to create user.");
             return;
         }
         String username = tokens[1];
         String password = tokens[2];
         // check 2: check if the username is already taken
-        if (usernameExistsPatient(username)) {
-            System.out.println("Username taken, try again!");
+        if (usernameExistsPatient(session, username)) {
+            session.out.println("Username taken, try again!");
             return;
         }
         // check 3: check if the password is strong
-        if (!strongPassword(password)) {
-            System.out.println("Password is not strong, try again!");
-            System.out.println("It should include:");
-            System.out.println("•At least 8 characters");
-            System.out.println("•A mixture of both uppercase and lowercase letters");
-            System.out.println("•A mixture of letters and numbers");
-            System.out.println("•Inclusion of at least one special character, from “!”, “@”, “#”, “?”");
+        if (!Util.strongPassword(password)) {
+            session.out.println("Password is not strong, try again!");
+            session.out.println("It should include:");
+            session.out.println("•At least 8 characters");
+            session.out.println("•A mixture of both uppercase and lowercase letters");
+            session.out.println("•A mixture of letters and numbers");
+            session.out.println("•Inclusion of at least one special character, from “!”, “@”, “#”, “?”");
             return;
         }
         byte[] salt = Util.generateSalt();
         byte[] hash = Util.generateHash(password, salt);
         // create the patient
         try {
-            currentPatient = new Patient.PatientBuilder(username, salt, hash).build();
+            session.patient = new Patient.PatientBuilder(username, salt, hash).build();
             // save to patient information to our database
-            currentPatient.saveToDB();
-            System.out.println("Created user " + username);
+            session.patient.saveToDB();
+            session.out.println("Created user " + username);
+        } catch (IllegalArgumentException e) {
+            session.out.println("Failed to create user.");
+        } catch (DuplicateKeyException e) {
+            // someone else took the username between the check and the insert
+            session.out.println("Username taken, try again!");
         } catch (SQLException e) {
-            System.out.println("Failed to create user.");
-            e.printStackTrace();
+            session.out.println("Failed to create user.");
+            reportError(e);
         }
     }
 
-    private static boolean usernameExistsPatient(String username) throws SQLException {
+    private static boolean usernameExistsPatient(Session session, String username) throws SQLException {
         ConnectionManager cm = new ConnectionManager();
         Connection con = cm.createConnection();
 
@@ -143,53 +378,58 @@ public class Scheduler {
             // returns false if the cursor is not before the first record or if there are no rows in the ResultSet.
             return resultSet.isBeforeFirst();
         } catch (SQLException e) {
-            System.out.println("Error occurred when checking username");
-            e.printStackTrace();
+            session.out.println("Error occurred when checking username");
+            reportError(e);
         } finally {
             cm.closeConnection();
         }
         return true;
     }
 
-    private static void createCaregiver(String[] tokens) throws SQLException {
+    private static void createCaregiver(Session session, String[] tokens) throws SQLException {
         // create_caregiver <username> <password>
         // check 1: the length for tokens need to be exactly 3 to include all information (with the operation name)
         if (tokens.length != 3) {
-            System.out.println("Failed to create user.");
+            session.out.println("Failed to create user.");
             return;
         }
         String username = tokens[1];
         String password = tokens[2];
         // check 2: check if the username has been taken already
-        if (usernameExistsCaregiver(username)) {
-            System.out.println("Username taken, try again!");
+        if (usernameExistsCaregiver(session, username)) {
+            session.out.println("Username taken, try again!");
             return;
         }
         // check 3: check if the password is strong (extra credit)
-        if (!strongPassword(password)) {
-            System.out.println("Password is not strong, try again!");
-            System.out.println("It should include:");
-            System.out.println("•At least 8 characters");
-            System.out.println("•A mixture of both uppercase and lowercase letters");
-            System.out.println("•A mixture of letters and numbers");
-            System.out.println("•Inclusion of at least one special character, from “!”, “@”, “#”, “?”");
+        if (!Util.strongPassword(password)) {
+            session.out.println("Password is not strong, try again!");
+            session.out.println("It should include:");
+            session.out.println("•At least 8 characters");
+            session.out.println("•A mixture of both uppercase and lowercase letters");
+            session.out.println("•A mixture of letters and numbers");
+            session.out.println("•Inclusion of at least one special character, from “!”, “@”, “#”, “?”");
             return;
         }
         byte[] salt = Util.generateSalt();
         byte[] hash = Util.generateHash(password, salt);
         // create the caregiver
         try {
-            currentCaregiver = new Caregiver.CaregiverBuilder(username, salt, hash).build();
+            session.caregiver = new Caregiver.CaregiverBuilder(username, salt, hash).build();
             // save to caregiver information to our database
-            currentCaregiver.saveToDB();
-            System.out.println("Created user " + username);
+            session.caregiver.saveToDB();
+            session.out.println("Created user " + username);
+        } catch (IllegalArgumentException e) {
+            session.out.println("Failed to create user.");
+        } catch (DuplicateKeyException e) {
+            // someone else took the username between the check and the insert
+            session.out.println("Username taken, try again!");
         } catch (SQLException e) {
-            System.out.println("Failed to create user.");
-            e.printStackTrace();
+            session.out.println("Failed to create user.");
+            reportError(e);
         }
     }
 
-    private static boolean usernameExistsCaregiver(String username) throws SQLException {
+    private static boolean usernameExistsCaregiver(Session session, String username) throws SQLException {
         ConnectionManager cm = new ConnectionManager();
         Connection con = cm.createConnection();
 
@@ -201,119 +441,120 @@ public class Scheduler {
             // returns false if the cursor is not before the first record or if there are no rows in the ResultSet.
             return resultSet.isBeforeFirst();
         } catch (SQLException e) {
-            System.out.println("Error occurred when checking username");
-            e.printStackTrace();
+            session.out.println("Error occurred when checking username");
+            reportError(e);
         } finally {
             cm.closeConnection();
         }
         return true;
     }
 
-    private static boolean strongPassword(String password) {
-        // at least 8 characters
-        if (password.length() < 8) {
-            return false;
-        }
-
-        boolean hasUpper = false;
-        boolean hasLower = false;
-        boolean hasNumber = false;
-        boolean hasSpecial = false;
-
-        for (char c : password.toCharArray()) {
-            if (Character.isUpperCase(c)) { // uppercase letters
-                hasUpper = true;
-            } else if (Character.isLowerCase(c)) { // lowercase letters
-                hasLower = true;
-            } else if (Character.isDigit(c)) { // numbers
-                hasNumber = true;
-            } else if (c == '!' || c == '@' || c == '#' || c == '?') { // special characters
-                hasSpecial = true;
-            } else {
-                return false;
-            }
-        }
-        return hasUpper && hasLower && hasNumber && hasSpecial;
-    }
-
-    private static void loginPatient(String[] tokens) {
+    private static void loginPatient(Session session, String[] tokens) {
         // login_patient <username> <password>
         // check 1: if someone's already logged-in, they need to log out first
-        if (currentCaregiver != null || currentPatient != null) {
-            System.out.println("User already logged in.");
+        if (session.caregiver != null || session.patient != null) {
+            session.out.println("User already logged in.");
             return;
         }
         // check 2: the length for tokens need to be exactly 3 to include all information (with the operation name)
         if (tokens.length != 3) {
-            System.out.println("Login failed.");
+            session.out.println("Login failed.");
             return;
         }
         String username = tokens[1];
         String password = tokens[2];
+        // check 3: reject users with too many recent failures before paying for a lookup and a hash
+        if (LoginRateLimiter.isBlocked(SessionToken.PATIENT, username)) {
+            session.out.println("Too many failed login attempts, try again later.");
+            return;
+        }
 
         Patient patient = null;
         try {
             patient = new Patient.PatientGetter(username, password).get();
         } catch (SQLException e) {
-            System.out.println("Login failed.");
-            e.printStackTrace();
+            session.out.println("Login failed.");
+            reportError(e);
+            return;
         }
         // check if the login was successful
         if (patient == null) {
-            System.out.println("Login failed.");
+            LoginRateLimiter.recordFailure(SessionToken.PATIENT, username);
+            AuditLog.record(username, "login_failed", "role=" + SessionToken.PATIENT);
+            session.out.println("Login failed.");
         } else {
-            System.out.println("Logged in as: " + username);
-            currentPatient = patient;
+            LoginRateLimiter.recordSuccess(SessionToken.PATIENT, username);
+            AuditLog.record(username, "login", "role=" + SessionToken.PATIENT);
+            session.out.println("Logged in as: " + username);
+            session.out.println("Session token: " + SessionToken.issue(SessionToken.PATIENT, username));
+            session.patient = patient;
         }
     }
 
-    private static void loginCaregiver(String[] tokens) {
+    private static void loginCaregiver(Session session, String[] tokens) {
         // login_caregiver <username> <password>
         // check 1: if someone's already logged-in, they need to log out first
-        if (currentCaregiver != null || currentPatient != null) {
-            System.out.println("User already logged in.");
+        if (session.caregiver != null || session.patient != null) {
+            session.out.println("User already logged in.");
             return;
         }
         // check 2: the length for tokens need to be exactly 3 to include all information (with the operation name)
         if (tokens.length != 3) {
-            System.out.println("Login failed.");
+            session.out.println("Login failed.");
             return;
         }
         String username = tokens[1];
         String password = tokens[2];
+        // check 3: reject users with too many recent failures before paying for a lookup and a hash
+        if (LoginRateLimiter.isBlocked(SessionToken.CAREGIVER, username)) {
+            session.out.println("Too many failed login attempts, try again later.");
+            return;
+        }
 
         Caregiver caregiver = null;
         try {
             caregiver = new Caregiver.CaregiverGetter(username, password).get();
         } catch (SQLException e) {
-            System.out.println("Login failed.");
-            e.printStackTrace();
+            session.out.println("Login failed.");
+            reportError(e);
+            return;
         }
         // check if the login was successful
         if (caregiver == null) {
-            System.out.println("Login failed.");
+            LoginRateLimiter.recordFailure(SessionToken.CAREGIVER, username);
+            AuditLog.record(username, "login_failed", "role=" + SessionToken.CAREGIVER);
+            session.out.println("Login failed.");
         } else {
-            System.out.println("Logged in as: " + username);
-            currentCaregiver = caregiver;
+            LoginRateLimiter.recordSuccess(SessionToken.CAREGIVER, username);
+            AuditLog.record(username, "login", "role=" + SessionToken.CAREGIVER);
+            session.out.println("Logged in as: " + username);
+            session.out.println("Session token: " + SessionToken.issue(SessionToken.CAREGIVER, username));
+            session.caregiver = caregiver;
         }
     }
 
-    private static void searchCaregiverSchedule(String[] tokens) throws SQLException {
+    private static void searchCaregiverSchedule(Session session, String[] tokens) throws SQLException {
         // search_caregiver_schedule <date>
         // check 1: the user must be logged in first
-        if (currentCaregiver == null && currentPatient == null) {
-            System.out.println("Please login first!");
+        if (session.caregiver == null && session.patient == null) {
+            session.out.println("Please login first!");
             return;
         }
 
         // check 2: the length for tokens need to be exactly 2 to include all information (with the operation name)
         if (tokens.length != 2) {
-            System.out.println("Please try again!");
+            session.out.println("Please try again!");
             return;
         }
 
         String date = tokens[1];
-        Date d = Date.valueOf(date);
+        Date d;
+        try {
+            d = Date.valueOf(date);
+        } catch (IllegalArgumentException e) {
+            session.out.println("Please enter a valid date!");
+            return;
+        }
 
         ConnectionManager cm = new ConnectionManager();
         Connection con = cm.createConnection();
@@ -324,247 +565,1077 @@ public class Scheduler {
             getAvailableCaregiver.setDate(1, d);
             ResultSet rs1 = getAvailableCaregiver.executeQuery();
             while (rs1.next()) {
-                System.out.println("Available caregiver: " + rs1.getString(1));
+                // a held slot cannot be reserved until its hold is released or expires
+                if (!HoldManager.isHeld(d, rs1.getString(1))) {
+                    session.out.println("Available caregiver: " + rs1.getString(1));
+                }
             }
 
             PreparedStatement getVaccines = con.prepareStatement("SELECT * FROM vaccines");
             ResultSet rs2 = getVaccines.executeQuery();
             while (rs2.next()) {
-                System.out.println("Vaccine: " + rs2.getString(1) +
-                        ", Available Doses: " + rs2.getInt(2));
+                session.out.println("Vaccine: " + rs2.getString(1) +
+                        ", Available Doses: " + (rs2.getInt(2) - HoldManager.heldDoses(rs2.getString(1))));
             }
         } catch (SQLException e) {
-            System.out.println("Please try again!");
-            e.printStackTrace();
+            session.out.println("Please try again!");
+            reportError(e);
         } finally {
             cm.closeConnection();
         }
     }
 
-    private static void reserve(String[] tokens) throws SQLException {
+    private static void reserve(Session session, String[] tokens) throws SQLException {
         // reserve <date> <vaccine>
-        if (currentPatient == null) {
+        if (session.patient == null) {
             // check 1: if the user is logged in
-            if (currentCaregiver == null) {
-                System.out.println("Please login first!");
+            if (session.caregiver == null) {
+                session.out.println("Please login first!");
             } else { // check 2: if the current user is a patient
-                System.out.println("Please login as a patient!");
+                session.out.println("Please login as a patient!");
             }
             return;
         }
 
         // check 3: the length for tokens need to be exactly 3 to include all information (with the operation name)
         if (tokens.length != 3) {
-            System.out.println("Please try again!");
+            session.out.println("Please try again!");
             return;
         }
 
         String date = tokens[1];
         String vaccineName = tokens[2];
-        Vaccine vaccine;
+        String patient = session.patient.getUsername();
+        String key = session.requestKey;
+        String command = session.requestCommand;
+        Date d;
+        try {
+            d = Date.valueOf(date);
+        } catch (IllegalArgumentException e) {
+            session.out.println("Please enter a valid date!");
+            return;
+        }
 
-        ConnectionManager cm = new ConnectionManager();
-        Connection con = cm.createConnection();
+        try {
+            // check 4: a retried request is answered with the result of the original one
+            String previous = previousResult(SessionToken.PATIENT, patient, key, command);
+            if (previous != null) {
+                session.out.print(previous);
+                return;
+            }
+            Booking booking = Transactions.run(con -> bookAppointment(con, d, vaccineName, patient, key, command));
+            if (booking.caregiver != null) {
+                AuditLog.record(patient, "reserve", "date=" + d + ", vaccine=" + vaccineName +
+                        ", caregiver=" + booking.caregiver);
+                bookingCounters.increment(d, booking.caregiver);
+                ScheduleBus.appointmentBooked(d, vaccineName, booking.caregiver);
+                if (key != null) {
+                    IdempotencyStore.remember(SessionToken.PATIENT, patient, key, command, booking.output);
+                }
+            }
+            session.out.print(booking.output);
+        } catch (SQLException e) {
+            // a concurrent request with the same key may have won the race and recorded its result
+            String previous = previousResult(SessionToken.PATIENT, patient, key, command);
+            if (previous != null) {
+                session.out.print(previous);
+                return;
+            }
+            session.out.println("Please try again!");
+            reportError(e);
+        }
+    }
 
+    private static String previousResult(String role, String username, String key, String command) {
+        if (key == null) {
+            return null;
+        }
         try {
-            Date d = Date.valueOf(date);
+            return IdempotencyStore.lookup(role, username, key, command);
+        } catch (InvalidInputException e) {
+            // answered like a retry, so the command is not run under a key that belongs to another one
+            return e.getMessage() + "\n";
+        } catch (SQLException e) {
+            // without the stored result the request is simply executed (and deduplicated by the key's row)
+            return null;
+        }
+    }
+
+    private static Booking bookAppointment(Connection con, Date d, String vaccineName, String patient, String key,
+                                           String command) throws SQLException {
+        PreparedStatement getAvailableCaregiver =
+                con.prepareStatement("SELECT Username FROM Availabilities WHERE Time = ? ORDER BY Username");
+        getAvailableCaregiver.setDate(1, d);
+        ResultSet rs1 = getAvailableCaregiver.executeQuery();
+        List<String> candidates = new ArrayList<>();
+        while (rs1.next()) {
+            // slots held for another patient's confirmation are not up for grabs
+            if (!HoldManager.isHeld(d, rs1.getString(1))) {
+                candidates.add(rs1.getString(1));
+            }
+        }
+        if (candidates.isEmpty()) {
+            return new Booking(null, "No Caregiver is available!\n");
+        }
+        // the strategy only consults in-memory counters, so spreading the load costs no extra query
+        String availableCaregiver = assignmentStrategy.choose(d, candidates);
+
+        // take a dose only if one is left besides the held ones, so concurrent reservations can never oversell
+        PreparedStatement takeDose =
+                con.prepareStatement("UPDATE Vaccines SET Doses = Doses - 1 WHERE Name = ? AND Doses > ?");
+        takeDose.setString(1, vaccineName);
+        takeDose.setInt(2, HoldManager.heldDoses(vaccineName));
+        if (takeDose.executeUpdate() == 0) {
+            return new Booking(null, "Not enough available doses!\n");
+        }
+
+        int appointmentId = nextAppointmentId(con);
+
+        PreparedStatement addAppointment =
+                con.prepareStatement("INSERT INTO Appointments VALUES(?, ?, ?, ?, ?)");
+        addAppointment.setInt(1, appointmentId);
+        addAppointment.setDate(2, d);
+        addAppointment.setString(3, patient);
+        addAppointment.setString(4, availableCaregiver);
+        addAppointment.setString(5, vaccineName);
+        addAppointment.executeUpdate();
+
+        StringBuilder result = new StringBuilder();
+        PreparedStatement getAppointment = con.prepareStatement("SELECT Appointment_ID, " +
+                "Caregiver_Username FROM Appointments WHERE Patient_Username = ? ORDER BY Caregiver_Username");
+        getAppointment.setString(1, patient);
+        ResultSet rs3 = getAppointment.executeQuery();
+        while (rs3.next()) {
+            result.append("Appointment ID: ").append(rs3.getInt(1))
+                    .append(", Caregiver username: ").append(rs3.getString(2)).append("\n");
+        }
+        if (key != null) {
+            IdempotencyStore.record(con, SessionToken.PATIENT, patient, key, command, result.toString());
+        }
+        return new Booking(availableCaregiver, result.toString());
+    }
+
+    private static int nextAppointmentId(Connection con) throws SQLException {
+        // the next ID is taken under a range lock, so it is unique across processes and safe to retry
+        // (archived IDs count too, in case the newest appointments have already been archived)
+        PreparedStatement getNextId = con.prepareStatement("SELECT ISNULL(MAX(Appointment_ID), 0) + 1 FROM (" +
+                "SELECT MAX(Appointment_ID) AS Appointment_ID FROM Appointments WITH (UPDLOCK, HOLDLOCK) " +
+                "UNION ALL SELECT MAX(Appointment_ID) FROM Appointments_Archive) AS ids");
+        ResultSet rs = getNextId.executeQuery();
+        rs.next();
+        return rs.getInt(1);
+    }
+
+    // The outcome of a reservation: the assigned caregiver (null if nothing was booked) and the text to print
+    private static class Booking {
+        private final String caregiver;
+        private final String output;
+
+        private Booking(String caregiver, String output) {
+            this.caregiver = caregiver;
+            this.output = output;
+        }
+    }
+
+    private static void reserveSeries(Session session, String[] tokens) throws SQLException {
+        // reserve_series <date> <vaccine>
+        if (session.patient == null) {
+            // check 1: if the user is logged in
+            if (session.caregiver == null) {
+                session.out.println("Please login first!");
+            } else { // check 2: if the current user is a patient
+                session.out.println("Please login as a patient!");
+            }
+            return;
+        }
+
+        // check 3: the length for tokens need to be exactly 3 to include all information (with the operation name)
+        if (tokens.length != 3) {
+            session.out.println("Please try again!");
+            return;
+        }
+
+        String date = tokens[1];
+        String vaccineName = tokens[2];
+        String patient = session.patient.getUsername();
+        String key = session.requestKey;
+        String command = session.requestCommand;
+        Date d;
+        try {
+            d = Date.valueOf(date);
+        } catch (IllegalArgumentException e) {
+            session.out.println("Please enter a valid date!");
+            return;
+        }
+
+        try {
+            // check 4: a retried request is answered with the result of the original one
+            String previous = previousResult(SessionToken.PATIENT, patient, key, command);
+            if (previous != null) {
+                session.out.print(previous);
+                return;
+            }
+            SeriesBooking booking = Transactions.run(con -> bookSeries(con, d, vaccineName, patient, key, command));
+            if (!booking.dates.isEmpty()) {
+                AuditLog.record(patient, "reserve_series", "dates=" + booking.dates + ", vaccine=" + vaccineName +
+                        ", caregivers=" + booking.caregivers);
+            }
+            for (int i = 0; i < booking.dates.size(); i++) {
+                bookingCounters.increment(booking.dates.get(i), booking.caregivers.get(i));
+                ScheduleBus.appointmentBooked(booking.dates.get(i), vaccineName, booking.caregivers.get(i));
+            }
+            if (key != null && !booking.dates.isEmpty()) {
+                IdempotencyStore.remember(SessionToken.PATIENT, patient, key, command, booking.output);
+            }
+            session.out.print(booking.output);
+        } catch (SQLException e) {
+            String previous = previousResult(SessionToken.PATIENT, patient, key, command);
+            if (previous != null) {
+                session.out.print(previous);
+                return;
+            }
+            session.out.println("Please try again!");
+            reportError(e);
+        }
+    }
+
+    // Books every dose of the vaccine's series in one transaction, so a patient never ends up with only part of it
+    private static SeriesBooking bookSeries(Connection con, Date d, String vaccineName, String patient, String key,
+                                            String command) throws SQLException {
+        PreparedStatement getSeries = con.prepareStatement("SELECT Series_Doses, Min_Interval_Days, " +
+                "Max_Interval_Days FROM Vaccines WHERE Name = ?");
+        getSeries.setString(1, vaccineName);
+        ResultSet rs1 = getSeries.executeQuery();
+        if (!rs1.next()) {
+            return new SeriesBooking("Vaccine not found!\n");
+        }
+        int doses = rs1.getInt(1);
+        int minInterval = rs1.getInt(2);
+        int maxInterval = rs1.getInt(3);
+
+        // one range query covers every day on which any dose of a series starting in the window could fall
+        LocalDate start = d.toLocalDate();
+        // computed in long and clamped, in case a series predates the bounds on it
+        int horizon = (int) Math.min(MAX_SERIES_HORIZON_DAYS, SERIES_SEARCH_DAYS + (long) (doses - 1) * maxInterval);
+        PreparedStatement getAvailabilities = con.prepareStatement("SELECT Time, Username FROM Availabilities " +
+                "WHERE Time >= ? AND Time < ? ORDER BY Time, Username");
+        getAvailabilities.setDate(1, d);
+        getAvailabilities.setDate(2, Date.valueOf(start.plusDays(horizon)));
+        ResultSet rs2 = getAvailabilities.executeQuery();
+        BitSet available = new BitSet(horizon);
+        Map<Integer, List<String>> candidates = new HashMap<>();
+        while (rs2.next()) {
+            int day = (int) ChronoUnit.DAYS.between(start, rs2.getDate(1).toLocalDate());
+            if (HoldManager.isHeld(rs2.getDate(1), rs2.getString(2))) {
+                continue;
+            }
+            available.set(day);
+            candidates.computeIfAbsent(day, k -> new ArrayList<>()).add(rs2.getString(2));
+        }
+        int[] days = SeriesSlotSearch.search(available, doses, minInterval, maxInterval, SERIES_SEARCH_DAYS);
+        if (days == null) {
+            return new SeriesBooking("No Caregiver is available for the whole series!\n");
+        }
+
+        // take the doses of the whole series at once, and only if all of them are left besides the held ones
+        PreparedStatement takeDoses = con.prepareStatement("UPDATE Vaccines SET Doses = Doses - ? " +
+                "WHERE Name = ? AND Doses >= ?");
+        takeDoses.setInt(1, doses);
+        takeDoses.setString(2, vaccineName);
+        takeDoses.setInt(3, doses + HoldManager.heldDoses(vaccineName));
+        if (takeDoses.executeUpdate() == 0) {
+            return new SeriesBooking("Not enough available doses!\n");
+        }
+
+        SeriesBooking booking = new SeriesBooking("");
+        StringBuilder result = new StringBuilder();
+        int appointmentId = nextAppointmentId(con);
+        PreparedStatement addAppointment =
+                con.prepareStatement("INSERT INTO Appointments VALUES(?, ?, ?, ?, ?)");
+        for (int day : days) {
+            Date doseDate = Date.valueOf(start.plusDays(day));
+            String caregiver = assignmentStrategy.choose(doseDate, candidates.get(day));
+            addAppointment.setInt(1, appointmentId);
+            addAppointment.setDate(2, doseDate);
+            addAppointment.setString(3, patient);
+            addAppointment.setString(4, caregiver);
+            addAppointment.setString(5, vaccineName);
+            addAppointment.addBatch();
+            booking.dates.add(doseDate);
+            booking.caregivers.add(caregiver);
+            result.append("Appointment ID: ").append(appointmentId)
+                    .append(", Date: ").append(doseDate)
+                    .append(", Caregiver username: ").append(caregiver).append("\n");
+            appointmentId++;
+        }
+        addAppointment.executeBatch();
+        if (key != null) {
+            IdempotencyStore.record(con, SessionToken.PATIENT, patient, key, command, result.toString());
+        }
+        booking.output = result.toString();
+        return booking;
+    }
+
+    // The outcome of a series reservation: the date and caregiver of every booked dose, and the text to print
+    private static class SeriesBooking {
+        private final List<Date> dates = new ArrayList<>();
+        private final List<String> caregivers = new ArrayList<>();
+        private String output;
+
+        private SeriesBooking(String output) {
+            this.output = output;
+        }
+    }
+
+    private static void hold(Session session, String[] tokens) {
+        // hold <date> <vaccine>
+        if (session.patient == null) {
+            // check 1: if the user is logged in
+            if (session.caregiver == null) {
+                session.out.println("Please login first!");
+            } else { // check 2: if the current user is a patient
+                session.out.println("Please login as a patient!");
+            }
+            return;
+        }
+
+        // check 3: the length for tokens need to be exactly 3 to include all information (with the operation name)
+        if (tokens.length != 3) {
+            session.out.println("Please try again!");
+            return;
+        }
+
+        String vaccineName = tokens[2];
+        Date d;
+        try {
+            d = Date.valueOf(tokens[1]);
+        } catch (IllegalArgumentException e) {
+            session.out.println("Please enter a valid date!");
+            return;
+        }
+
+        ConnectionManager cm = new ConnectionManager();
+        // plain reads: a hold never locks anything in the database
+        try {
+            Connection con = cm.createConnection();
             PreparedStatement getAvailableCaregiver =
                     con.prepareStatement("SELECT Username FROM Availabilities WHERE Time = ? ORDER BY Username");
             getAvailableCaregiver.setDate(1, d);
             ResultSet rs1 = getAvailableCaregiver.executeQuery();
-            String availableCaregiver;
-            if (rs1.next()) {
-                availableCaregiver = rs1.getString(1);
-            } else {
-                System.out.println("No Caregiver is available!");
-                return;
+            List<String> candidates = new ArrayList<>();
+            while (rs1.next()) {
+                if (!HoldManager.isHeld(d, rs1.getString(1))) {
+                    candidates.add(rs1.getString(1));
+                }
             }
+            PreparedStatement getDoses = con.prepareStatement("SELECT Doses FROM Vaccines WHERE Name = ?");
+            getDoses.setString(1, vaccineName);
+            ResultSet rs2 = getDoses.executeQuery();
+            int doses = rs2.next() ? rs2.getInt(1) : 0;
 
-            PreparedStatement getAvailableVaccine =
-                    con.prepareStatement("SELECT Name,Doses FROM Vaccines WHERE Name = ? AND Doses > 0");
-            getAvailableVaccine.setString(1, vaccineName);
-            ResultSet rs2 = getAvailableVaccine.executeQuery();
-            if (!rs2.next()) {
-                System.out.println("Not enough available doses!");
-                return;
-            } else {
-                try {
-                    vaccine = new Vaccine.VaccineGetter(vaccineName).get();
-                    vaccine.decreaseAvailableDoses(1);
-                } catch (SQLException e) {
-                    System.out.println("Please try again!");
-                    e.printStackTrace();
+            // a concurrent hold may take the chosen slot first; then try the next caregiver
+            while (!candidates.isEmpty()) {
+                String caregiver = assignmentStrategy.choose(d, candidates);
+                Hold hold = HoldManager.hold(session.patient.getUsername(), d, vaccineName, caregiver, doses);
+                if (hold != null) {
+                    session.out.println("Hold ID: " + hold.getId() + ", Caregiver username: " + caregiver +
+                            ", Expires in: " + (hold.getExpiresAt() - System.currentTimeMillis()) / 1000 + "s");
+                    return;
                 }
+                candidates.remove(caregiver);
             }
+            session.out.println("No Caregiver is available!");
+        } catch (InsufficientDosesException e) {
+            session.out.println("Not enough available doses!");
+        } catch (SQLException e) {
+            session.out.println("Please try again!");
+            reportError(e);
+        } finally {
+            cm.closeConnection();
+        }
+    }
 
-            PreparedStatement addAppointment =
-                    con.prepareStatement("INSERT INTO Appointments VALUES(?, ?, ?, ?, ?)");
-            addAppointment.setInt(1, numAppointments);
-            addAppointment.setDate(2, d);
-            addAppointment.setString(3, currentPatient.getUsername());
-            addAppointment.setString(4, availableCaregiver);
-            addAppointment.setString(5, vaccineName);
-            addAppointment.executeUpdate();
-            numAppointments++; // for unique appointment ID
+    private static void confirm(Session session, String[] tokens) {
+        // confirm <hold_id>
+        // check 1: check if the current logged-in user is a patient
+        if (session.patient == null) {
+            session.out.println("Please login as a patient first!");
+            return;
+        }
+        // check 2: the length for tokens need to be exactly 2 to include all information (with the operation name)
+        if (tokens.length != 2) {
+            session.out.println("Please try again!");
+            return;
+        }
+        Hold hold;
+        try {
+            hold = HoldManager.take(Long.parseLong(tokens[1]), session.patient.getUsername());
+        } catch (NumberFormatException e) {
+            session.out.println("Please try again!");
+            return;
+        }
+        // check 3: the hold must be the patient's own and not have expired
+        if (hold == null) {
+            session.out.println("Hold not found or expired!");
+            return;
+        }
 
-            PreparedStatement getAppointment = con.prepareStatement("SELECT Appointment_ID, " +
-                    "Caregiver_Username FROM Appointments WHERE Patient_Username = ? ORDER BY Caregiver_Username");
-            getAppointment.setString(1, currentPatient.getUsername());
-            ResultSet rs3 = getAppointment.executeQuery();
-            while (rs3.next()) {
-                System.out.println("Appointment ID: " + rs3.getInt(1)
-                        + ", Caregiver username: " + rs3.getString(2));
+        try {
+            String result = Transactions.run(con -> confirmHold(con, hold));
+            if (result != null) {
+                AuditLog.record(hold.getPatient(), "confirm", "date=" + hold.getDate() + ", vaccine=" +
+                        hold.getVaccine() + ", caregiver=" + hold.getCaregiver() + ", hold=" + hold.getId());
+                bookingCounters.increment(hold.getDate(), hold.getCaregiver());
+                ScheduleBus.appointmentBooked(hold.getDate(), hold.getVaccine(), hold.getCaregiver());
+                session.out.print(result);
+            } else {
+                session.out.println("Not enough available doses!");
             }
         } catch (SQLException e) {
-            System.out.println("Please try again!");
-            e.printStackTrace();
+            session.out.println("Please try again!");
+            reportError(e);
         } finally {
-            cm.closeConnection();
+            HoldManager.release(hold);
         }
     }
 
-    private static void uploadAvailability(String[] tokens) {
-        // upload_availability <date>
-        // check 1: check if the current logged-in user is a caregiver
-        if (currentCaregiver == null) {
-            System.out.println("Please login as a caregiver first!");
+    private static String confirmHold(Connection con, Hold hold) throws SQLException {
+        // the hold's own dose is still counted as held, so only the other holds are left alone;
+        // the update can only fail if another process took the dose in the meantime
+        PreparedStatement takeDose =
+                con.prepareStatement("UPDATE Vaccines SET Doses = Doses - 1 WHERE Name = ? AND Doses > ?");
+        takeDose.setString(1, hold.getVaccine());
+        takeDose.setInt(2, HoldManager.heldDoses(hold.getVaccine()) - 1);
+        if (takeDose.executeUpdate() == 0) {
+            return null;
+        }
+
+        int appointmentId = nextAppointmentId(con);
+        PreparedStatement addAppointment =
+                con.prepareStatement("INSERT INTO Appointments VALUES(?, ?, ?, ?, ?)");
+        addAppointment.setInt(1, appointmentId);
+        addAppointment.setDate(2, hold.getDate());
+        addAppointment.setString(3, hold.getPatient());
+        addAppointment.setString(4, hold.getCaregiver());
+        addAppointment.setString(5, hold.getVaccine());
+        addAppointment.executeUpdate();
+        return "Appointment ID: " + appointmentId + ", Caregiver username: " + hold.getCaregiver() + "\n";
+    }
+
+    private static void release(Session session, String[] tokens) {
+        // release <hold_id>
+        // check 1: check if the current logged-in user is a patient
+        if (session.patient == null) {
+            session.out.println("Please login as a patient first!");
             return;
         }
         // check 2: the length for tokens need to be exactly 2 to include all information (with the operation name)
         if (tokens.length != 2) {
-            System.out.println("Please try again!");
+            session.out.println("Please try again!");
+            return;
+        }
+        Hold hold;
+        try {
+            hold = HoldManager.take(Long.parseLong(tokens[1]), session.patient.getUsername());
+        } catch (NumberFormatException e) {
+            session.out.println("Please try again!");
+            return;
+        }
+        if (hold == null) {
+            session.out.println("Hold not found or expired!");
+            return;
+        }
+        HoldManager.release(hold);
+        session.out.println("Hold released!");
+    }
+
+    private static void uploadAvailability(Session session, String[] tokens) {
+        // upload_availability <date> [site]
+        // check 1: check if the current logged-in user is a caregiver
+        if (session.caregiver == null) {
+            session.out.println("Please login as a caregiver first!");
+            return;
+        }
+        // check 2: the length for tokens need to be 2 or 3 to include all information (with the operation name)
+        if (tokens.length != 2 && tokens.length != 3) {
+            session.out.println("Please try again!");
             return;
         }
         String date = tokens[1];
         try {
             Date d = Date.valueOf(date);
-            currentCaregiver.uploadAvailability(d);
-            System.out.println("Availability uploaded!");
+            Site site = null;
+            // check 3: a named site must exist
+            if (tokens.length == 3) {
+                site = new Site.SiteGetter(tokens[2]).get();
+                if (site == null) {
+                    session.out.println("Site not found!");
+                    return;
+                }
+            }
+            session.caregiver.uploadAvailability(d, site);
+            ScheduleBus.availabilityUploaded(d, session.caregiver.getUsername());
+            session.out.println("Availability uploaded!");
         } catch (IllegalArgumentException e) {
-            System.out.println("Please enter a valid date!");
+            session.out.println("Please enter a valid date!");
+        } catch (DuplicateKeyException e) {
+            session.out.println("Availability already uploaded for that date!");
         } catch (SQLException e) {
-            System.out.println("Error occurred when uploading availability");
-            e.printStackTrace();
+            session.out.println("Error occurred when uploading availability");
+            reportError(e);
         }
     }
 
-    private static void cancel(String[] tokens) {
+    private static void addSite(Session session, String[] tokens) {
+        // add_site <name> <latitude> <longitude>
+        // check 1: check if the current logged-in user is a caregiver
+        if (session.caregiver == null) {
+            session.out.println("Please login as a caregiver first!");
+            return;
+        }
+        // check 2: the length for tokens need to be exactly 4 to include all information (with the operation name)
+        if (tokens.length != 4) {
+            session.out.println("Please try again!");
+            return;
+        }
+        try {
+            Site site = new Site.SiteBuilder(tokens[1], Double.parseDouble(tokens[2]),
+                    Double.parseDouble(tokens[3])).build();
+            site.saveToDB();
+            SiteIndex.add(site);
+            AuditLog.record(session.caregiver.getUsername(), "add_site", "site=" + site.getName() +
+                    ", latitude=" + site.getLatitude() + ", longitude=" + site.getLongitude());
+            session.out.println("Site added!");
+        } catch (IllegalArgumentException e) {
+            // also covers NumberFormatException
+            session.out.println("Please try again!");
+        } catch (DuplicateKeyException e) {
+            session.out.println("Site already exists!");
+        } catch (InvalidInputException e) {
+            session.out.println("Please try again!");
+        } catch (SQLException e) {
+            session.out.println("Error occurred when adding the site");
+            reportError(e);
+        }
+    }
+
+    // A free slot found by search_nearest: the date, the caregiver and the site with its distance
+    private static class NearbySlot {
+        private final Date date;
+        private final String caregiver;
+        private final SiteIndex.Nearby site;
+
+        private NearbySlot(Date date, String caregiver, SiteIndex.Nearby site) {
+            this.date = date;
+            this.caregiver = caregiver;
+            this.site = site;
+        }
+    }
+
+    private static void searchNearest(Session session, String[] tokens) {
+        // search_nearest <latitude> <longitude> <vaccine> <radius_km> [count]
+        // check 1: the user must be logged in first
+        if (session.caregiver == null && session.patient == null) {
+            session.out.println("Please login first!");
+            return;
+        }
+        // check 2: the length for tokens need to be 5 or 6 to include all information (with the operation name)
+        if (tokens.length != 5 && tokens.length != 6) {
+            session.out.println("Please try again!");
+            return;
+        }
+        double latitude;
+        double longitude;
+        double radius;
+        int count;
+        try {
+            latitude = Double.parseDouble(tokens[1]);
+            longitude = Double.parseDouble(tokens[2]);
+            radius = Double.parseDouble(tokens[4]);
+            count = tokens.length == 6 ? Integer.parseInt(tokens[5]) : DEFAULT_NEAREST_COUNT;
+        } catch (NumberFormatException e) {
+            session.out.println("Please try again!");
+            return;
+        }
+        // check 3: the point, radius and count must make sense
+        if (!(latitude >= -90 && latitude <= 90 && longitude >= -180 && longitude <= 180 && radius > 0) ||
+                count < 1 || count > MAX_NEAREST_COUNT) {
+            session.out.println("Please try again!");
+            return;
+        }
+        String vaccineName = tokens[3];
+
+        ConnectionManager cm = new ConnectionManager();
+        try {
+            List<SiteIndex.Nearby> nearby = SiteIndex.within(latitude, longitude, radius);
+            if (nearby.isEmpty()) {
+                session.out.println("No site within " + radius + " km!");
+                return;
+            }
+            Map<Integer, SiteIndex.Nearby> sites = new HashMap<>();
+            StringBuilder siteIds = new StringBuilder();
+            for (SiteIndex.Nearby n : nearby) {
+                sites.put(n.getSite().getSiteId(), n);
+                siteIds.append(siteIds.length() == 0 ? "" : ",").append(n.getSite().getSiteId());
+            }
+
+            Connection con = cm.createConnection();
+            // every slot needs a dose, so there is no point in listing more slots than free doses
+            PreparedStatement getDoses = con.prepareStatement("SELECT Doses FROM Vaccines WHERE Name = ?");
+            getDoses.setString(1, vaccineName);
+            ResultSet rs1 = getDoses.executeQuery();
+            int doses = (rs1.next() ? rs1.getInt(1) : 0) - HoldManager.heldDoses(vaccineName);
+            if (doses <= 0) {
+                session.out.println("Not enough available doses!");
+                return;
+            }
+            count = Math.min(count, doses);
+
+            // one query for all nearby sites; the site list is a single parameter, however many sites there are
+            LocalDate today = LocalDate.now();
+            PreparedStatement getSlots = con.prepareStatement("SELECT Time, Username, Site_ID FROM Availabilities " +
+                    "WHERE Time >= ? AND Time < ? AND Site_ID IN (SELECT CAST(value AS int) FROM STRING_SPLIT(?, ',')) " +
+                    "ORDER BY Time");
+            getSlots.setDate(1, Date.valueOf(today));
+            getSlots.setDate(2, Date.valueOf(today.plusDays(NEAREST_SEARCH_DAYS)));
+            getSlots.setString(3, siteIds.toString());
+            ResultSet rs2 = getSlots.executeQuery();
+            // rows come by date; once count slots are found, only the rest of that day can still compete on distance
+            List<NearbySlot> slots = new ArrayList<>();
+            while (rs2.next()) {
+                Date d = rs2.getDate(1);
+                if (slots.size() >= count && !d.equals(slots.get(slots.size() - 1).date)) {
+                    break;
+                }
+                if (!HoldManager.isHeld(d, rs2.getString(2))) {
+                    slots.add(new NearbySlot(d, rs2.getString(2), sites.get(rs2.getInt(3))));
+                }
+            }
+            rs2.close();
+            if (slots.isEmpty()) {
+                session.out.println("No Caregiver is available!");
+                return;
+            }
+            slots.sort(Comparator.comparing((NearbySlot slot) -> slot.date)
+                    .thenComparingDouble(slot -> slot.site.getDistanceKm())
+                    .thenComparing(slot -> slot.caregiver));
+            for (NearbySlot slot : slots.subList(0, Math.min(count, slots.size()))) {
+                session.out.println("Date: " + slot.date + ", Caregiver username: " + slot.caregiver +
+                        ", Site: " + slot.site.getSite().getName() +
+                        ", Distance: " + String.format("%.1f", slot.site.getDistanceKm()) + " km");
+            }
+        } catch (SQLException e) {
+            session.out.println("Please try again!");
+            reportError(e);
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    private static void cancel(Session session, String[] tokens) {
         // TODO: Extra credit
         // Did Option 1 for extra credit
     }
 
-    private static void addDoses(String[] tokens) {
+    private static void addDoses(Session session, String[] tokens) {
         // add_doses <vaccine> <number>
         // check 1: check if the current logged-in user is a caregiver
-        if (currentCaregiver == null) {
-            System.out.println("Please login as a caregiver first!");
+        if (session.caregiver == null) {
+            session.out.println("Please login as a caregiver first!");
             return;
         }
         // check 2: the length for tokens need to be exactly 3 to include all information (with the operation name)
         if (tokens.length != 3) {
-            System.out.println("Please try again!");
+            session.out.println("Please try again!");
             return;
         }
         String vaccineName = tokens[1];
-        int doses = Integer.parseInt(tokens[2]);
-        Vaccine vaccine = null;
+        String caregiver = session.caregiver.getUsername();
+        String key = session.requestKey;
+        String command = session.requestCommand;
+        int doses;
         try {
-            vaccine = new Vaccine.VaccineGetter(vaccineName).get();
-        } catch (SQLException e) {
-            System.out.println("Error occurred when adding doses");
-            e.printStackTrace();
+            doses = Integer.parseInt(tokens[2]);
+        } catch (NumberFormatException e) {
+            session.out.println("Please try again!");
+            return;
         }
-        // check 3: if getter returns null, it means that we need to create the vaccine and insert it into the Vaccines
-        //          table
-        if (vaccine == null) {
-            try {
-                vaccine = new Vaccine.VaccineBuilder(vaccineName, doses).build();
-                vaccine.saveToDB();
-            } catch (SQLException e) {
-                System.out.println("Error occurred when adding doses");
-                e.printStackTrace();
+        // check 3: the number of doses must be positive
+        if (doses <= 0) {
+            session.out.println("Please try again!");
+            return;
+        }
+
+        try {
+            // check 4: a retried request is answered with the result of the original one
+            String previous = previousResult(SessionToken.CAREGIVER, caregiver, key, command);
+            if (previous != null) {
+                session.out.print(previous);
+                return;
             }
-        } else {
-            // if the vaccine is not null, meaning that the vaccine already exists in our table
-            try {
-                vaccine.increaseAvailableDoses(doses);
-            } catch (SQLException e) {
-                System.out.println("Error occurred when adding doses");
-                e.printStackTrace();
+            // the update creates the vaccine if it is not in the Vaccines table yet
+            String result = Transactions.run(con -> {
+                Vaccine.addDoses(con, vaccineName, doses);
+                if (key != null) {
+                    IdempotencyStore.record(con, SessionToken.CAREGIVER, caregiver, key, command,
+                            "Doses updated!\n");
+                }
+                return "Doses updated!\n";
+            });
+            if (key != null) {
+                IdempotencyStore.remember(SessionToken.CAREGIVER, caregiver, key, command, result);
+            }
+            AuditLog.record(caregiver, "add_doses", "vaccine=" + vaccineName + ", doses=" + doses);
+            ScheduleBus.dosesAdded(vaccineName, doses);
+            session.out.print(result);
+        } catch (IllegalArgumentException e) {
+            session.out.println("Please try again!");
+        } catch (SQLException e) {
+            String previous = previousResult(SessionToken.CAREGIVER, caregiver, key, command);
+            if (previous != null) {
+                session.out.print(previous);
+                return;
             }
+            session.out.println("Error occurred when adding doses");
+            reportError(e);
         }
-        System.out.println("Doses updated!");
     }
 
-    private static void showAppointments(String[] tokens) throws SQLException {
+    private static void setSeries(Session session, String[] tokens) {
+        // set_series <vaccine> <doses> <min_interval_days> <max_interval_days>
+        // check 1: check if the current logged-in user is a caregiver
+        if (session.caregiver == null) {
+            session.out.println("Please login as a caregiver first!");
+            return;
+        }
+        // check 2: the length for tokens need to be exactly 5 to include all information (with the operation name)
+        if (tokens.length != 5) {
+            session.out.println("Please try again!");
+            return;
+        }
+        String vaccineName = tokens[1];
+        try {
+            int doses = Integer.parseInt(tokens[2]);
+            int minInterval = Integer.parseInt(tokens[3]);
+            int maxInterval = Integer.parseInt(tokens[4]);
+            // check 3: the vaccine must exist
+            Vaccine vaccine = new Vaccine.VaccineGetter(vaccineName).get();
+            if (vaccine == null) {
+                session.out.println("Vaccine not found!");
+                return;
+            }
+            vaccine.updateSeries(doses, minInterval, maxInterval);
+            AuditLog.record(session.caregiver.getUsername(), "set_series", "vaccine=" + vaccineName +
+                    ", doses=" + doses + ", min_interval_days=" + minInterval + ", max_interval_days=" + maxInterval);
+            session.out.println("Series updated!");
+        } catch (IllegalArgumentException e) {
+            // also covers NumberFormatException
+            session.out.println("Please try again!");
+        } catch (NotFoundException e) {
+            session.out.println("Vaccine not found!");
+        } catch (InvalidInputException e) {
+            // a series the database rejects even though it passed the checks here
+            session.out.println("Please try again!");
+        } catch (SQLException e) {
+            session.out.println("Error occurred when updating the series");
+            reportError(e);
+        }
+    }
+
+    private static void showAppointments(Session session, String[] tokens) throws SQLException {
         // check 1: the user must be logged in
-        if (currentCaregiver == null && currentPatient == null) {
-            System.out.println("Please login first!");
+        if (session.caregiver == null && session.patient == null) {
+            session.out.println("Please login first!");
+            return;
         }
 
-        // check 2: the length for tokens need to be exactly 1 to include all information (operation name)
-        if (tokens.length != 1) {
-            System.out.println("Please try again!");
+        // check 2: the length for tokens need to be 1 or 2 to include all information (operation name, recent)
+        if (tokens.length > 2 || (tokens.length == 2 && !tokens[1].equals("recent"))) {
+            session.out.println("Please try again!");
             return;
         }
+        // only the full history reads the archive, so the recent view never touches cold data
+        boolean includeArchive = tokens.length == 1;
 
         ConnectionManager cm = new ConnectionManager();
         Connection con = cm.createConnection();
 
-        if (currentCaregiver != null) {
+        if (session.caregiver != null) {
             try {
-                String caregiver = currentCaregiver.getUsername();
-                PreparedStatement getCaregiverAppointments = con.prepareStatement("SELECT Appointment_ID, " +
-                        "Vaccine_name, Appointment_time, Patient_Username FROM Appointments " +
-                        "WHERE Caregiver_Username = ? ORDER BY Appointment_ID");
+                String caregiver = session.caregiver.getUsername();
+                PreparedStatement getCaregiverAppointments = con.prepareStatement(appointmentsQuery(
+                        "Patient_Username", "Caregiver_Username", includeArchive));
                 getCaregiverAppointments.setString(1, caregiver);
+                if (includeArchive) {
+                    getCaregiverAppointments.setString(2, caregiver);
+                }
                 ResultSet rs = getCaregiverAppointments.executeQuery();
                 while (rs.next()) {
-                    System.out.println("" + rs.getInt(1) + " " + rs.getString(2) +
+                    session.out.println("" + rs.getInt(1) + " " + rs.getString(2) +
                             " " + rs.getString(3) + " " + rs.getString(4));
                 }
             } catch (SQLException e) {
-                System.out.println("Please try again!");
-                e.printStackTrace();
+                session.out.println("Please try again!");
+                reportError(e);
             } finally {
                 cm.closeConnection();
             }
         } else {
             try {
-                String patient = currentPatient.getUsername();
-                PreparedStatement getPatientAppointments = con.prepareStatement("SELECT Appointment_ID, " +
-                        "Vaccine_name, Appointment_time, Caregiver_Username FROM Appointments " +
-                        "WHERE Patient_Username = ? ORDER BY Appointment_ID");
+                String patient = session.patient.getUsername();
+                PreparedStatement getPatientAppointments = con.prepareStatement(appointmentsQuery(
+                        "Caregiver_Username", "Patient_Username", includeArchive));
                 getPatientAppointments.setString(1, patient);
+                if (includeArchive) {
+                    getPatientAppointments.setString(2, patient);
+                }
                 ResultSet rs = getPatientAppointments.executeQuery();
                 while (rs.next()) {
-                    System.out.println("" + rs.getInt(1) + " " + rs.getString(2) +
+                    session.out.println("" + rs.getInt(1) + " " + rs.getString(2) +
                             " " + rs.getString(3) + " " + rs.getString(4));
                 }
             } catch (SQLException e) {
-                System.out.println("Please try again!");
-                e.printStackTrace();
+                session.out.println("Please try again!");
+                reportError(e);
             } finally {
                 cm.closeConnection();
             }
         }
     }
 
-    private static void logout(String[] tokens) {
+    private static String appointmentsQuery(String otherColumn, String userColumn, boolean includeArchive) {
+        String columns = "Appointment_ID, Vaccine_name, Appointment_time, " + otherColumn;
+        String hot = "SELECT " + columns + " FROM Appointments WHERE " + userColumn + " = ?";
+        if (!includeArchive) {
+            return hot + " ORDER BY Appointment_ID";
+        }
+        return hot + " UNION ALL SELECT " + columns + " FROM Appointments_Archive WHERE " + userColumn + " = ?" +
+                " ORDER BY Appointment_ID";
+    }
+
+    private static void subscribe(Session session, String[] tokens) {
+        // subscribe schedule
+        // subscribe <date> <vaccine>
+        // check 1: the user must be logged in
+        if (session.caregiver == null && session.patient == null) {
+            session.out.println("Please login first!");
+            return;
+        }
+        if (tokens.length == 2 && tokens[1].equals("schedule")) {
+            // check 2: only caregivers have a schedule of their own
+            if (session.caregiver == null) {
+                session.out.println("Please login as a caregiver first!");
+                return;
+            }
+            ScheduleBus.subscribeCaregiver(session.mailbox, session.caregiver.getUsername());
+            session.out.println("Subscribed to your schedule! Changes are shown after each command.");
+        } else if (tokens.length == 3) {
+            try {
+                Date d = Date.valueOf(tokens[1]);
+                // nothing changes on a date that has passed
+                if (d.toLocalDate().isBefore(LocalDate.now())) {
+                    session.out.println("Please enter a valid date!");
+                    return;
+                }
+                ScheduleBus.subscribeSlot(session.mailbox, d, tokens[2]);
+                session.out.println("Subscribed to " + tokens[2] + " on " + tokens[1] +
+                        "! Changes are shown after each command.");
+            } catch (IllegalArgumentException e) {
+                session.out.println("Please enter a valid date!");
+            }
+        } else {
+            session.out.println("Please try again!");
+        }
+    }
+
+    private static void unsubscribe(Session session, String[] tokens) {
+        // unsubscribe
+        // check 1: the length for tokens need to be exactly 1 to include all information (operation name)
+        if (tokens.length != 1) {
+            session.out.println("Please try again!");
+            return;
+        }
+        ScheduleBus.unsubscribeAll(session.mailbox);
+        session.out.println("Unsubscribed!");
+    }
+
+    private static void errorStats(Session session, String[] tokens) {
+        // error_stats
+        // check 1: check if the current logged-in user is a caregiver
+        if (session.caregiver == null) {
+            session.out.println("Please login as a caregiver first!");
+            return;
+        }
+        // check 2: the length for tokens need to be exactly 1 to include all information (operation name)
+        if (tokens.length != 1) {
+            session.out.println("Please try again!");
+            return;
+        }
+        for (SchedulerException.Kind kind : SchedulerException.Kind.values()) {
+            session.out.println(kind + ": " + ErrorCounters.get(kind));
+        }
+    }
+
+    private static void health(Session session, String[] tokens) {
+        // health
+        // check 1: the length for tokens need to be exactly 1 to include all information (operation name)
+        if (tokens.length != 1) {
+            session.out.println("Please try again!");
+            return;
+        }
+        session.out.println("State: " + Lifecycle.state() + ", Live: " + Lifecycle.live() +
+                ", Ready: " + Lifecycle.ready());
+        session.out.println("Connections: " + ConnectionPool.borrowed() + " in use, " + ConnectionPool.idle() +
+                " idle, " + ConnectionPool.size() + " max");
+        session.out.println("Leaked connections: " + ConnectionPool.leakedConnections());
+        session.out.println("Admission limit: " + AdmissionControl.limit() + ", In flight: " +
+                AdmissionControl.inFlight() + ", Database latency: " + AdmissionControl.latencyMillis() +
+                "ms (baseline " + AdmissionControl.baselineMillis() + "ms)");
+        for (AdmissionControl.Lane lane : AdmissionControl.Lane.values()) {
+            session.out.println(lane + ": " + AdmissionControl.admitted(lane) + " admitted, " +
+                    AdmissionControl.rejected(lane) + " rejected");
+        }
+        session.out.println("Caregivers and dates with subscribers: " + ScheduleBus.subscriptions());
+        session.out.println("Audit events pending: " + AuditLog.pending() +
+                ", Backpressure waits: " + AuditLog.backpressureWaits() +
+                ", Durable timeouts: " + AuditLog.durableTimeouts());
+    }
+
+    private static void report(Session session, String[] tokens) {
+        // report <from> <to>
+        // check 1: check if the current logged-in user is a caregiver
+        if (session.caregiver == null) {
+            session.out.println("Please login as a caregiver first!");
+            return;
+        }
+        // check 2: the length for tokens need to be exactly 3 to include all information (with the operation name)
+        if (tokens.length != 3) {
+            session.out.println("Please try again!");
+            return;
+        }
+        CapacityReport report;
+        try {
+            report = new CapacityReport(Date.valueOf(tokens[1]), Date.valueOf(tokens[2]));
+        } catch (IllegalArgumentException e) {
+            session.out.println("Please enter a valid date range of at most " + CapacityReport.MAX_DAYS + " days!");
+            return;
+        }
+        try {
+            report.compute();
+            report.print(session.out);
+        } catch (SQLException e) {
+            session.out.println("Error occurred when generating report");
+            reportError(e);
+        }
+    }
+
+    private static void importCsv(Session session, String[] tokens) {
+        // import <patients|caregivers|availabilities|doses> <file>
+        // check 1: check if the current logged-in user is a caregiver
+        if (session.caregiver == null) {
+            session.out.println("Please login as a caregiver first!");
+            return;
+        }
+        // check 2: the length for tokens need to be exactly 3 to include all information (with the operation name)
+        if (tokens.length != 3) {
+            session.out.println("Please try again!");
+            return;
+        }
+        try {
+            new BulkImporter(tokens[1], tokens[2], session.out).run();
+            AuditLog.record(session.caregiver.getUsername(), "import", "kind=" + tokens[1] + ", file=" + tokens[2]);
+        } catch (IllegalArgumentException e) {
+            session.out.println(e.getMessage());
+        } catch (IOException e) {
+            session.out.println("Error occurred when reading " + tokens[2]);
+        } catch (SQLException e) {
+            session.out.println("Error occurred when importing");
+            reportError(e);
+        }
+    }
+
+    private static void exportCsv(Session session, String[] tokens) {
+        // export <appointments|availabilities|doses> <file>
+        // check 1: check if the current logged-in user is a caregiver
+        if (session.caregiver == null) {
+            session.out.println("Please login as a caregiver first!");
+            return;
+        }
+        // check 2: the length for tokens need to be exactly 3 to include all information (with the operation name)
+        if (tokens.length != 3) {
+            session.out.println("Please try again!");
+            return;
+        }
+        try {
+            int rows = new BulkExporter(tokens[1], tokens[2], session.out).run();
+            session.out.println("Exported " + rows + " rows to " + tokens[2]);
+        } catch (IllegalArgumentException e) {
+            session.out.println(e.getMessage());
+        } catch (IOException e) {
+            session.out.println("Error occurred when writing " + tokens[2]);
+        } catch (SQLException e) {
+            session.out.println("Error occurred when exporting");
+            reportError(e);
+        }
+    }
+
+    private static void resume(Session session, String[] tokens) {
+        // resume <token>
+        // check 1: if someone's already logged-in, they need to log out first
+        if (session.caregiver != null || session.patient != null) {
+            session.out.println("User already logged in.");
+            return;
+        }
+        // check 2: the length for tokens need to be exactly 2 to include all information (with the operation name)
+        if (tokens.length != 2) {
+            session.out.println("Please try again!");
+            return;
+        }
+        // check 3: the token must carry a valid signature and must not have expired
+        SessionToken token = SessionToken.verify(tokens[1]);
+        if (token == null) {
+            session.out.println("Invalid or expired session token!");
+            return;
+        }
+        restoreSession(session, token);
+        session.out.println("Logged in as: " + token.getUsername());
+    }
+
+    private static void restoreSession(Session session, SessionToken token) {
+        // the token already proves the password was checked, so no salt or hash is loaded
+        if (token.getRole().equals(SessionToken.PATIENT)) {
+            session.caregiver = null;
+            session.patient = new Patient.PatientBuilder(token.getUsername(), null, null).build();
+        } else {
+            session.patient = null;
+            session.caregiver = new Caregiver.CaregiverBuilder(token.getUsername(), null, null).build();
+        }
+    }
+
+    // Classify and count an error; only unexpected ones are worth the cost of printing a stack trace
+    private static void reportError(SQLException e) {
+        SchedulerException error = SqlErrors.classify(e);
+        if (error.getKind() == SchedulerException.Kind.FATAL) {
+            error.printStackTrace();
+        }
+    }
+
+    private static void logout(Session session, String[] tokens) {
         // check 1: check if the user is not logged in
-        if (currentCaregiver == null && currentPatient == null) {
-            System.out.println("Please login first.");
+        if (session.caregiver == null && session.patient == null) {
+            session.out.println("Please login first.");
             return;
         }
 
         // check 2: the length for tokens need to be exactly 1 to include all information (operation name)
         if (tokens.length != 1) {
-            System.out.println("Please try again!");
+            session.out.println("Please try again!");
             return;
         }
 
-        currentCaregiver = null;
-        currentPatient = null;
-        System.out.println("Successfully logged out!");
+        ScheduleBus.unsubscribeAll(session.mailbox);
+        session.caregiver = null;
+        session.patient = null;
+        session.out.println("Successfully logged out!");
     }
 }
@@ -0,0 +1,42 @@
+package scheduler;
+
+import scheduler.model.Caregiver;
+import scheduler.model.Patient;
+import scheduler.notify.Mailbox;
+import scheduler.notify.ScheduleBus;
+
+import java.io.PrintStream;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class Session {
+    private static final AtomicLong nextId = new AtomicLong(1);
+
+    // identifies the session to admission control until a user has logged in
+    final long id = nextId.getAndIncrement();
+
+    // the currently logged-in user of this session
+    // Note: it is always true that at most one of caregiver and patient is not null
+    //       since only one user can be logged-in per session at a time
+    Caregiver caregiver = null;
+    Patient patient = null;
+
+    // idempotency key of the command being executed, or null if the client did not send one, and the command's
+    // text, which the key is bound to
+    String requestKey = null;
+    String requestCommand = null;
+
+    // where the results of commands are printed
+    final PrintStream out;
+
+    // schedule changes this session subscribed to, waiting to be printed
+    final Mailbox mailbox = new Mailbox();
+
+    public Session(PrintStream out) {
+        this.out = out;
+    }
+
+    // Call when the session ends, however it ends, so its mailbox stops receiving notifications
+    public void close() {
+        ScheduleBus.unsubscribeAll(mailbox);
+    }
+}
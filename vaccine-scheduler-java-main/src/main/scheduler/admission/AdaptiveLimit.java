@@ -0,0 +1,88 @@
+package scheduler.admission;
+
+// A concurrency limit that follows database latency. Latency samples are averaged over short windows and
+// compared with a slow-moving baseline:
+// - while a window stays within TOLERANCE of the baseline and the limit is actually in use, the limit grows
+//   by about the square root of itself, probing for more capacity;
+// - once latency rises above that, the limit shrinks in proportion (by at most half per window), because
+//   the extra commands are only queueing in the database.
+// Each new limit is blended with the old one so a single noisy window does not swing it.
+class AdaptiveLimit {
+
+    // constants for the windows and how strongly the limit reacts
+    private static final long WINDOW_NANOS = 250000000;
+    private static final int MIN_WINDOW_SAMPLES = 10;
+    private static final double TOLERANCE = 1.5;
+    private static final double MIN_GRADIENT = 0.5;
+    private static final double BASELINE_WEIGHT = 0.01;
+    private static final double SMOOTHING = 0.2;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private volatile double limit;
+    private double baselineNanos = 0;
+    private double lastWindowNanos = 0;
+    private long windowStart = System.nanoTime();
+    private long windowSum = 0;
+    private int windowSamples = 0;
+    private int windowMaxInFlight = 0;
+
+    AdaptiveLimit(int initialLimit, int minLimit, int maxLimit) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    }
+
+    int get() {
+        return (int) limit;
+    }
+
+    // Average latency of the last full window, or of the baseline before there was one
+    long latencyNanos() {
+        synchronized (this) {
+            return (long) (lastWindowNanos > 0 ? lastWindowNanos : baselineNanos);
+        }
+    }
+
+    long baselineNanos() {
+        synchronized (this) {
+            return (long) baselineNanos;
+        }
+    }
+
+    synchronized void sample(long latencyNanos, int inFlight) {
+        windowSum += latencyNanos;
+        windowSamples++;
+        windowMaxInFlight = Math.max(windowMaxInFlight, inFlight);
+        long now = System.nanoTime();
+        if (windowSamples < MIN_WINDOW_SAMPLES || now - windowStart < WINDOW_NANOS) {
+            return;
+        }
+        double windowNanos = (double) windowSum / windowSamples;
+        boolean limitInUse = windowMaxInFlight >= limit / 2;
+        windowStart = now;
+        windowSum = 0;
+        windowSamples = 0;
+        windowMaxInFlight = 0;
+        lastWindowNanos = windowNanos;
+
+        if (baselineNanos == 0) {
+            baselineNanos = windowNanos;
+        } else {
+            baselineNanos = baselineNanos * (1 - BASELINE_WEIGHT) + windowNanos * BASELINE_WEIGHT;
+        }
+        // a long slowdown drags the baseline up; once latency is back down, let it catch up faster
+        if (baselineNanos > 2 * windowNanos) {
+            baselineNanos *= 0.95;
+        }
+
+        double gradient = Math.max(MIN_GRADIENT, Math.min(1, TOLERANCE * baselineNanos / windowNanos));
+        double target = limit * gradient;
+        // a limit that is not reached says nothing about whether a higher one would be safe
+        if (limitInUse && gradient >= 1) {
+            target += Math.sqrt(limit);
+        }
+        double next = limit * (1 - SMOOTHING) + target * SMOOTHING;
+        limit = Math.max(minLimit, Math.min(maxLimit, next));
+    }
+}
@@ -0,0 +1,202 @@
+package scheduler.admission;
+
+import scheduler.db.ConnectionPool;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Decides whether a command may run now, before it touches the database. A command that may not is turned
+// away at once with a time to retry after, rather than left to wait for a connection until it times out.
+//
+// Commands run in lanes:
+// - ADMIN: operator commands and ones that never reach the database; always admitted.
+// - CAREGIVER: commands of logged-in caregivers.
+// - PATIENT: everything else, including every command sent before logging in.
+// Each user has a token bucket (UserRate commands per second, bursts of UserBurst), and so does each session
+// nobody has logged in to yet. The caregiver and patient lanes each have one of their own (CaregiverRate,
+// PatientRate), so a rush of patients cannot use up the caregivers' rate. A rate of 0 turns that bucket off.
+//
+// On top of that, commands in the two lanes share an adaptive concurrency limit that follows the latency of
+// database work (see AdaptiveLimit). Patients may only fill the limit up to CaregiverShare percent short
+// of it, so caregivers always find room.
+public class AdmissionControl {
+
+    public enum Lane { ADMIN, CAREGIVER, PATIENT }
+
+    // constants for the defaults and for forgetting idle users
+    private static final int DEFAULT_USER_RATE = 5;
+    private static final int DEFAULT_USER_BURST = 20;
+    private static final int DEFAULT_PATIENT_RATE = 200;
+    private static final int DEFAULT_CAREGIVER_RATE = 50;
+    private static final int DEFAULT_CAREGIVER_SHARE = 20;
+    private static final int MIN_CONCURRENCY = 2;
+    private static final int MAX_TRACKED_USERS = 100000;
+    private static final long SWEEP_INTERVAL_MILLIS = 1000;
+    private static final long MIN_RETRY_AFTER_MILLIS = 1000;
+
+    private static final int USER_RATE = loadSetting("UserRate", DEFAULT_USER_RATE);
+    private static final int USER_BURST = Math.max(1, loadSetting("UserBurst", DEFAULT_USER_BURST));
+    private static final int CAREGIVER_SHARE =
+            Math.max(0, Math.min(100, loadSetting("CaregiverShare", DEFAULT_CAREGIVER_SHARE)));
+
+    private static final Map<Lane, TokenBucket> laneBuckets = new EnumMap<>(Lane.class);
+    private static final ConcurrentHashMap<String, TokenBucket> userBuckets = new ConcurrentHashMap<>();
+    private static final AtomicLong lastSweep = new AtomicLong();
+    // the pool keeps the database busy with PoolSize commands at a time; more than that mostly wait for a
+    // connection, which the limit notices through the latency samples
+    private static final AdaptiveLimit limit = new AdaptiveLimit(ConnectionPool.size(), MIN_CONCURRENCY,
+            Math.max(MIN_CONCURRENCY, loadSetting("MaxConcurrency", 4 * ConnectionPool.size())));
+    private static final Map<Lane, LongAdder> admitted = new EnumMap<>(Lane.class);
+    private static final Map<Lane, LongAdder> rejected = new EnumMap<>(Lane.class);
+    private static final Object lock = new Object();
+    private static final ThreadLocal<Boolean> inAdmittedCommand = ThreadLocal.withInitial(() -> Boolean.FALSE);
+    private static int caregiversInFlight = 0;
+    private static int patientsInFlight = 0;
+
+    static {
+        int caregiverRate = loadSetting("CaregiverRate", DEFAULT_CAREGIVER_RATE);
+        int patientRate = loadSetting("PatientRate", DEFAULT_PATIENT_RATE);
+        if (caregiverRate > 0) {
+            laneBuckets.put(Lane.CAREGIVER, new TokenBucket(caregiverRate, caregiverRate));
+        }
+        if (patientRate > 0) {
+            laneBuckets.put(Lane.PATIENT, new TokenBucket(patientRate, patientRate));
+        }
+        for (Lane lane : Lane.values()) {
+            admitted.put(lane, new LongAdder());
+            rejected.put(lane, new LongAdder());
+        }
+    }
+
+    // Call before running a command; user identifies whose bucket to charge, and may be null to charge none.
+    // Returns 0 if the command may run, in which case exit must be called after it; otherwise returns how many
+    // milliseconds the client should wait before retrying.
+    public static long enter(Lane lane, String user) {
+        if (lane == Lane.ADMIN) {
+            admitted.get(lane).increment();
+            return 0;
+        }
+        // the checks go from the shared resources to the user's own bucket, and whatever a rejected command
+        // took is given back, so clients are not charged for commands that never ran
+        synchronized (lock) {
+            int max = limit.get();
+            if (lane == Lane.PATIENT) {
+                // keep the caregivers' share free, but never all of the limit
+                max = Math.max(1, max - Math.max(1, max * CAREGIVER_SHARE / 100));
+            }
+            if (caregiversInFlight + patientsInFlight >= max) {
+                rejected.get(lane).increment();
+                // a slot frees up about when a command in flight finishes
+                return Math.max(MIN_RETRY_AFTER_MILLIS, 2 * limit.latencyNanos() / 1000000);
+            }
+            if (lane == Lane.CAREGIVER) {
+                caregiversInFlight++;
+            } else {
+                patientsInFlight++;
+            }
+        }
+        TokenBucket laneBucket = laneBuckets.get(lane);
+        long waitNanos = laneBucket == null ? 0 : laneBucket.tryTake();
+        if (waitNanos == 0 && user != null && USER_RATE > 0) {
+            waitNanos = userBucket(user).tryTake();
+            if (waitNanos > 0 && laneBucket != null) {
+                laneBucket.refund();
+            }
+        }
+        if (waitNanos > 0) {
+            release(lane);
+            rejected.get(lane).increment();
+            return Math.max(MIN_RETRY_AFTER_MILLIS, waitNanos / 1000000);
+        }
+        inAdmittedCommand.set(Boolean.TRUE);
+        admitted.get(lane).increment();
+        return 0;
+    }
+
+    // Call after a command that was admitted by enter has finished
+    public static void exit(Lane lane) {
+        if (lane == Lane.ADMIN) {
+            return;
+        }
+        inAdmittedCommand.remove();
+        release(lane);
+    }
+
+    // Whether the current thread is running a command admitted by enter. Only such commands' database work
+    // feeds the limit: background jobs, imports and reports hold connections for long stretches by design,
+    // and taking those for overload would shut interactive users out.
+    public static boolean inAdmittedCommand() {
+        return inAdmittedCommand.get();
+    }
+
+    // How long a command admitted by enter waited for and held a database connection
+    public static void recordDatabaseLatency(long nanos) {
+        limit.sample(nanos, inFlight());
+    }
+
+    public static int limit() {
+        return limit.get();
+    }
+
+    public static int inFlight() {
+        synchronized (lock) {
+            return caregiversInFlight + patientsInFlight;
+        }
+    }
+
+    public static long latencyMillis() {
+        return limit.latencyNanos() / 1000000;
+    }
+
+    public static long baselineMillis() {
+        return limit.baselineNanos() / 1000000;
+    }
+
+    public static long admitted(Lane lane) {
+        return admitted.get(lane).sum();
+    }
+
+    public static long rejected(Lane lane) {
+        return rejected.get(lane).sum();
+    }
+
+    private static void release(Lane lane) {
+        synchronized (lock) {
+            if (lane == Lane.CAREGIVER) {
+                caregiversInFlight--;
+            } else {
+                patientsInFlight--;
+            }
+        }
+    }
+
+    private static TokenBucket userBucket(String user) {
+        TokenBucket bucket = userBuckets.get(user);
+        if (bucket != null) {
+            return bucket;
+        }
+        long now = System.currentTimeMillis();
+        long swept = lastSweep.get();
+        if (userBuckets.size() >= MAX_TRACKED_USERS && now - swept >= SWEEP_INTERVAL_MILLIS &&
+                lastSweep.compareAndSet(swept, now)) {
+            // a full bucket belongs to a user who has been quiet for a while, and a new one starts out full
+            userBuckets.values().removeIf(TokenBucket::isFull);
+        }
+        return userBuckets.computeIfAbsent(user, k -> new TokenBucket(USER_RATE, USER_BURST));
+    }
+
+    private static int loadSetting(String name, int defaultValue) {
+        String value = System.getenv(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package scheduler.admission;
+
+// A token bucket refilled continuously at rate tokens per second, holding at most burst tokens
+class TokenBucket {
+
+    private final double nanosPerToken;
+    private final double burst;
+    private double tokens;
+    private long refilledAt;
+
+    TokenBucket(int rate, int burst) {
+        this.nanosPerToken = 1e9 / rate;
+        this.burst = burst;
+        this.tokens = burst;
+        this.refilledAt = System.nanoTime();
+    }
+
+    // Take a token; returns 0 if one was taken, otherwise how many nanoseconds until one is available
+    synchronized long tryTake() {
+        refill();
+        if (tokens >= 1) {
+            tokens--;
+            return 0;
+        }
+        return (long) Math.ceil((1 - tokens) * nanosPerToken);
+    }
+
+    // Give back a token taken for a request that was turned away afterwards
+    synchronized void refund() {
+        refill();
+        tokens = Math.min(burst, tokens + 1);
+    }
+
+    // A full bucket has been idle long enough to be forgotten; a new one behaves the same
+    synchronized boolean isFull() {
+        refill();
+        return tokens >= burst;
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(burst, tokens + (now - refilledAt) / nanosPerToken);
+        refilledAt = now;
+    }
+}
@@ -0,0 +1,27 @@
+package scheduler.assign;
+
+import java.sql.Date;
+import java.util.List;
+
+public interface AssignmentStrategy {
+
+    // Pick one of the caregivers available on the given date; candidates is never empty
+    String choose(Date d, List<String> candidates);
+
+    // Returns the strategy with the given name, falling back to least-booked for unknown names
+    static AssignmentStrategy fromName(String name, BookingCounters counters) {
+        if (name == null) {
+            return new LeastBookedStrategy(counters);
+        }
+        switch (name) {
+            case "first":
+                return new FirstAvailableStrategy();
+            case "round-robin":
+                return new RoundRobinStrategy();
+            case "random-of-k":
+                return new RandomOfKStrategy(counters, RandomOfKStrategy.DEFAULT_K);
+            default:
+                return new LeastBookedStrategy(counters);
+        }
+    }
+}
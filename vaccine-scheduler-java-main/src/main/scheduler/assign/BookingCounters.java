@@ -0,0 +1,64 @@
+package scheduler.assign;
+
+import scheduler.util.NameDictionary;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+public class BookingCounters {
+
+    // appointments booked per caregiver, per day, by this process; caregivers are indexed by their dictionary ID
+    private final ConcurrentHashMap<LocalDate, DayCounts> counts = new ConcurrentHashMap<>();
+
+    public int get(Date d, String caregiver) {
+        DayCounts day = counts.get(d.toLocalDate());
+        if (day == null) {
+            return 0;
+        }
+        // a caregiver who was never booked may not have an ID yet; looking it up does not add one
+        int id = NameDictionary.CAREGIVERS.lookup(caregiver);
+        return id == NameDictionary.NOT_FOUND ? 0 : day.get(id);
+    }
+
+    // Record a committed booking
+    public void increment(Date d, String caregiver) {
+        DayCounts day = counts.get(d.toLocalDate());
+        if (day == null) {
+            // a new day is a good moment to forget the ones that are over
+            evictBefore(LocalDate.now());
+            day = counts.computeIfAbsent(d.toLocalDate(), k -> new DayCounts());
+        }
+        day.increment(NameDictionary.CAREGIVERS.intern(caregiver));
+    }
+
+    // Drop the counters of days that can no longer be booked
+    public void evictBefore(LocalDate date) {
+        counts.keySet().removeIf(day -> day.isBefore(date));
+    }
+
+    // One counter per caregiver ID. Reads are lock-free; increments are serialized so none is lost while
+    // the array grows, which is cheap since they only happen after a booking commits.
+    private static class DayCounts {
+        private volatile AtomicIntegerArray values = new AtomicIntegerArray(16);
+
+        private int get(int id) {
+            AtomicIntegerArray current = values;
+            return id < current.length() ? current.get(id) : 0;
+        }
+
+        private synchronized void increment(int id) {
+            AtomicIntegerArray current = values;
+            if (id >= current.length()) {
+                AtomicIntegerArray grown = new AtomicIntegerArray(Math.max(id + 1, current.length() * 2));
+                for (int i = 0; i < current.length(); i++) {
+                    grown.set(i, current.get(i));
+                }
+                values = grown;
+                current = grown;
+            }
+            current.incrementAndGet(id);
+        }
+    }
+}
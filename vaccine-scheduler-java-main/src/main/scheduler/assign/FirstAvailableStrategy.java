@@ -0,0 +1,13 @@
+package scheduler.assign;
+
+import java.sql.Date;
+import java.util.List;
+
+// The original behaviour: always the alphabetically first caregiver
+public class FirstAvailableStrategy implements AssignmentStrategy {
+
+    @Override
+    public String choose(Date d, List<String> candidates) {
+        return candidates.get(0);
+    }
+}
@@ -0,0 +1,27 @@
+package scheduler.assign;
+
+import java.sql.Date;
+import java.util.List;
+
+// Picks the caregiver with the fewest bookings on that day
+public class LeastBookedStrategy implements AssignmentStrategy {
+    private final BookingCounters counters;
+
+    public LeastBookedStrategy(BookingCounters counters) {
+        this.counters = counters;
+    }
+
+    @Override
+    public String choose(Date d, List<String> candidates) {
+        String best = candidates.get(0);
+        int bestCount = counters.get(d, best);
+        for (int i = 1; i < candidates.size() && bestCount > 0; i++) {
+            int count = counters.get(d, candidates.get(i));
+            if (count < bestCount) {
+                best = candidates.get(i);
+                bestCount = count;
+            }
+        }
+        return best;
+    }
+}
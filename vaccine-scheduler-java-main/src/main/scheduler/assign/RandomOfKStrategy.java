@@ -0,0 +1,35 @@
+package scheduler.assign;
+
+import java.sql.Date;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Samples k caregivers at random and picks the least booked of them; unlike least-booked, concurrent
+// reservations do not all pile onto the same caregiver before the counters catch up
+public class RandomOfKStrategy implements AssignmentStrategy {
+    public static final int DEFAULT_K = 2;
+
+    private final BookingCounters counters;
+    private final int k;
+
+    public RandomOfKStrategy(BookingCounters counters, int k) {
+        this.counters = counters;
+        this.k = k;
+    }
+
+    @Override
+    public String choose(Date d, List<String> candidates) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String best = candidates.get(random.nextInt(candidates.size()));
+        int bestCount = counters.get(d, best);
+        for (int i = 1; i < k; i++) {
+            String candidate = candidates.get(random.nextInt(candidates.size()));
+            int count = counters.get(d, candidate);
+            if (count < bestCount) {
+                best = candidate;
+                bestCount = count;
+            }
+        }
+        return best;
+    }
+}
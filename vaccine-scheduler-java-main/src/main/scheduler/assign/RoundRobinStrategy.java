@@ -0,0 +1,18 @@
+package scheduler.assign;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Hands out the caregivers of each day in turn
+public class RoundRobinStrategy implements AssignmentStrategy {
+    private final ConcurrentHashMap<LocalDate, AtomicInteger> next = new ConcurrentHashMap<>();
+
+    @Override
+    public String choose(Date d, List<String> candidates) {
+        int turn = next.computeIfAbsent(d.toLocalDate(), k -> new AtomicInteger()).getAndIncrement();
+        return candidates.get(Math.floorMod(turn, candidates.size()));
+    }
+}
@@ -0,0 +1,54 @@
+package scheduler.assign;
+
+import java.util.BitSet;
+
+// Finds the earliest days on which a whole dose series can be booked. Days are offsets from the start of the
+// search, and a dose may follow the previous one after minInterval to maxInterval days (both inclusive). Doses
+// are on different days, so a series of more than one dose needs a minInterval of at least 1.
+//
+// A single backward pass marks, for every dose k, the days from which doses k..n-1 can still be completed:
+// a day qualifies for dose k if it is available and the next qualifying day for dose k+1 at or after
+// day + minInterval is no later than day + maxInterval. Each pass visits only the available days, so the search
+// costs O(doses * available days) instead of trying every combination of slots.
+public class SeriesSlotSearch {
+    private SeriesSlotSearch() {
+    }
+
+    // Returns the day of every dose, or null if no series fits with its first dose before firstDayLimit
+    public static int[] search(BitSet available, int doses, int minInterval, int maxInterval, int firstDayLimit) {
+        if (doses < 1 || minInterval < 0 || maxInterval < minInterval) {
+            throw new IllegalArgumentException("Invalid dose series!");
+        }
+        if (doses > 1 && minInterval < 1) {
+            throw new IllegalArgumentException("Doses of a series must be on different days!");
+        }
+        BitSet[] feasible = new BitSet[doses];
+        feasible[doses - 1] = available;
+        for (int k = doses - 2; k >= 0; k--) {
+            BitSet next = feasible[k + 1];
+            BitSet current = new BitSet();
+            for (int day = available.nextSetBit(0); day >= 0; day = available.nextSetBit(day + 1)) {
+                int following = next.nextSetBit(day + minInterval);
+                if (following >= 0 && following <= day + maxInterval) {
+                    current.set(day);
+                }
+            }
+            if (current.isEmpty()) {
+                return null;
+            }
+            feasible[k] = current;
+        }
+
+        int first = feasible[0].nextSetBit(0);
+        if (first < 0 || first >= firstDayLimit) {
+            return null;
+        }
+        // walking forward, every later dose is guaranteed to find a day within the interval
+        int[] days = new int[doses];
+        days[0] = first;
+        for (int k = 1; k < doses; k++) {
+            days[k] = feasible[k].nextSetBit(days[k - 1] + minInterval);
+        }
+        return days;
+    }
+}
@@ -0,0 +1,32 @@
+package scheduler.audit;
+
+public class AuditEvent {
+    private final long time;
+    private final String actor;
+    private final String action;
+    private final String detail;
+
+    AuditEvent(long time, String actor, String action, String detail) {
+        this.time = time;
+        this.actor = actor;
+        this.action = action;
+        this.detail = detail;
+    }
+
+    // Getters
+    public long getTime() {
+        return time;
+    }
+
+    public String getActor() {
+        return actor;
+    }
+
+    public String getAction() {
+        return action;
+    }
+
+    public String getDetail() {
+        return detail;
+    }
+}
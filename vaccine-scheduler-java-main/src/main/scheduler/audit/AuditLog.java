@@ -0,0 +1,202 @@
+package scheduler.audit;
+
+import scheduler.util.Util;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+// The audit trail of who booked, cancelled or changed what. Callers hand events to a lock-free ring and a
+// single writer thread appends them in batches, so an event costs the caller no database round trip.
+//
+// Settings:
+// - AuditSink: "table" (the Audit_Log table, the default) or "file" (AuditFile, default audit.log,
+//   rotated at AuditFileMaxBytes).
+// - AuditDurability: "async" (the default) returns once the event is queued. "durable" waits until the
+//   batch holding the event has been committed, or synced to disk for the file sink. Waiting callers share
+//   that one commit, and give up after DURABLE_WAIT_MILLIS with the event still queued.
+//
+// Events are never dropped. A failed batch is retried until it succeeds, and while it is retried a full ring
+// makes callers wait.
+public class AuditLog {
+
+    public enum Durability { ASYNC, DURABLE }
+
+    // constants for the ring and the writer
+    private static final int RING_CAPACITY = 8192;
+    private static final int MAX_BATCH = 512;
+    private static final long IDLE_PARK_NANOS = 100000000;
+    private static final long MIN_RETRY_MILLIS = 100;
+    private static final long MAX_RETRY_MILLIS = 5000;
+    private static final long DEFAULT_FILE_MAX_BYTES = 64L * 1024 * 1024;
+    private static final long CLOSE_TIMEOUT_MILLIS = 10000;
+    private static final int MAX_ACTION_LENGTH = 64;
+    private static final long DURABLE_WAIT_MILLIS = 10000;
+
+    private static final Durability DURABILITY = loadDurability();
+    private static final AuditRing ring = new AuditRing(RING_CAPACITY);
+    private static final AuditSink sink = loadSink();
+    private static final Object commitLock = new Object();
+    private static final LongAdder durableTimeouts = new LongAdder();
+    // every event with a lower sequence number has been written
+    private static long committed = 0;
+    private static volatile boolean writerIdle = false;
+    private static volatile boolean closing = false;
+    private static final Thread writer = new Thread(AuditLog::writeLoop, "audit-writer");
+
+    static {
+        // a daemon, so a process that never shuts the audit log down can still exit; Lifecycle closes it
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    public static void record(String actor, String action, String detail) {
+        // an event the table cannot store would be retried forever, so oversized names are cut here
+        long seq = ring.put(new AuditEvent(System.currentTimeMillis(), truncate(actor, Util.MAX_NAME_LENGTH),
+                truncate(action, MAX_ACTION_LENGTH), detail));
+        if (writerIdle) {
+            LockSupport.unpark(writer);
+        }
+        if (DURABILITY == Durability.DURABLE && !awaitCommitted(seq, DURABLE_WAIT_MILLIS)) {
+            // the writer is failing or stuck; the event stays queued, but the caller is not held up any longer
+            durableTimeouts.increment();
+            System.err.println("Audit event " + action + " by " + actor + " not committed within " +
+                    DURABLE_WAIT_MILLIS + "ms, still queued");
+        }
+    }
+
+    // Write everything queued so far and stop the writer
+    public static void close() {
+        closing = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(CLOSE_TIMEOUT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writer.isAlive()) {
+            System.err.println("Audit log closed with " + ring.pending() + " events unwritten");
+        }
+        sink.close();
+    }
+
+    public static long pending() {
+        return ring.pending();
+    }
+
+    // How often a caller had to wait because the ring was full
+    public static long backpressureWaits() {
+        return ring.fullWaits();
+    }
+
+    // How often a durable caller gave up waiting for its event to be committed
+    public static long durableTimeouts() {
+        return durableTimeouts.sum();
+    }
+
+    private static String truncate(String value, int length) {
+        if (value == null) {
+            return "";
+        }
+        return value.length() > length ? value.substring(0, length) : value;
+    }
+
+    private static void writeLoop() {
+        List<AuditEvent> batch = new ArrayList<>(MAX_BATCH);
+        while (true) {
+            batch.clear();
+            if (ring.drainTo(batch, MAX_BATCH) == 0) {
+                if (closing && ring.isEmpty()) {
+                    return;
+                }
+                // publish idleness before the last look, so a producer either sees it or is seen here
+                writerIdle = true;
+                if (ring.isEmpty() && !closing) {
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                }
+                writerIdle = false;
+                continue;
+            }
+            // everything that queued up while the previous batch was written goes out in one commit
+            writeWithRetry(batch);
+            synchronized (commitLock) {
+                committed = ring.consumed();
+                commitLock.notifyAll();
+            }
+        }
+    }
+
+    private static void writeWithRetry(List<AuditEvent> batch) {
+        long delay = MIN_RETRY_MILLIS;
+        while (true) {
+            try {
+                sink.append(batch);
+                return;
+            } catch (SQLException | IOException e) {
+                System.err.println("Audit write failed, retrying in " + delay + "ms: " + e.getMessage());
+            }
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                // keep retrying; the events must not be lost
+            }
+            delay = Math.min(MAX_RETRY_MILLIS, delay * 2);
+        }
+    }
+
+    // Wait until the event is committed; returns false if that did not happen within timeoutMillis
+    private static boolean awaitCommitted(long seq, long timeoutMillis) {
+        boolean interrupted = false;
+        long deadline = System.nanoTime() + timeoutMillis * 1000000;
+        try {
+            synchronized (commitLock) {
+                while (committed <= seq) {
+                    long remainingMillis = (deadline - System.nanoTime()) / 1000000;
+                    if (remainingMillis <= 0) {
+                        return false;
+                    }
+                    try {
+                        commitLock.wait(remainingMillis);
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+                return true;
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static Durability loadDurability() {
+        String durability = System.getenv("AuditDurability");
+        return "durable".equalsIgnoreCase(durability) ? Durability.DURABLE : Durability.ASYNC;
+    }
+
+    private static AuditSink loadSink() {
+        if (!"file".equalsIgnoreCase(System.getenv("AuditSink"))) {
+            return new TableSink();
+        }
+        String file = System.getenv("AuditFile") != null ? System.getenv("AuditFile") : "audit.log";
+        long maxBytes = DEFAULT_FILE_MAX_BYTES;
+        try {
+            if (System.getenv("AuditFileMaxBytes") != null) {
+                maxBytes = Long.parseLong(System.getenv("AuditFileMaxBytes"));
+            }
+        } catch (NumberFormatException e) {
+            // keep the default
+        }
+        try {
+            return new FileSink(Paths.get(file), maxBytes, DURABILITY == Durability.DURABLE);
+        } catch (IOException e) {
+            System.err.println("Cannot open audit file " + file + ", auditing to the database: " + e.getMessage());
+            return new TableSink();
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package scheduler.audit;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+// A bounded ring of events with many producers and one consumer, the audit writer. A producer claims a
+// sequence number with a single atomic increment, fills its slot and publishes it; nothing is locked.
+// When the ring is full a producer waits for the writer to free its slot rather than drop the event.
+class AuditRing {
+
+    private static final long FULL_WAIT_NANOS = 50000;
+
+    private final AuditEvent[] entries;
+    // sequence + 1 of the event published in each slot, so a slot reused on the next lap is not mistaken
+    private final AtomicLongArray published;
+    private final int mask;
+    private final AtomicLong claimed = new AtomicLong();
+    // written by the consumer only; every sequence below it has been taken out of the ring
+    private volatile long consumed = 0;
+    private final LongAdder fullWaits = new LongAdder();
+
+    AuditRing(int capacity) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two!");
+        }
+        entries = new AuditEvent[capacity];
+        published = new AtomicLongArray(capacity);
+        mask = capacity - 1;
+    }
+
+    // Returns the event's sequence number
+    long put(AuditEvent event) {
+        long seq = claimed.getAndIncrement();
+        if (seq - consumed >= entries.length) {
+            fullWaits.increment();
+            while (seq - consumed >= entries.length) {
+                LockSupport.parkNanos(FULL_WAIT_NANOS);
+            }
+        }
+        int slot = (int) (seq & mask);
+        entries[slot] = event;
+        published.set(slot, seq + 1);
+        return seq;
+    }
+
+    // Consumer only: move up to max published events, in order, into the batch
+    int drainTo(List<AuditEvent> batch, int max) {
+        long seq = consumed;
+        int count = 0;
+        while (count < max) {
+            int slot = (int) (seq & mask);
+            if (published.get(slot) != seq + 1) {
+                break;
+            }
+            batch.add(entries[slot]);
+            entries[slot] = null;
+            seq++;
+            count++;
+        }
+        consumed = seq;
+        return count;
+    }
+
+    boolean isEmpty() {
+        return claimed.get() == consumed;
+    }
+
+    // Sequence of the next event the consumer will take
+    long consumed() {
+        return consumed;
+    }
+
+    long pending() {
+        return claimed.get() - consumed;
+    }
+
+    long fullWaits() {
+        return fullWaits.sum();
+    }
+}
@@ -0,0 +1,13 @@
+package scheduler.audit;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.List;
+
+// Where the audit writer appends its batches; each batch is one group commit. A batch that fails is retried
+// until it succeeds, so a sink must not report success for a batch it has not fully written.
+interface AuditSink {
+    void append(List<AuditEvent> batch) throws SQLException, IOException;
+
+    void close();
+}
@@ -0,0 +1,80 @@
+package scheduler.audit;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.List;
+
+// Appends tab-separated lines to a local file, one write per batch. When the file grows past maxBytes it is
+// renamed with a timestamp suffix and a new one is started. With force, every batch is synced to disk before
+// it counts as written, so one fsync covers the whole batch.
+class FileSink implements AuditSink {
+
+    private final Path path;
+    private final long maxBytes;
+    private final boolean force;
+    private FileChannel channel;
+
+    FileSink(Path path, long maxBytes, boolean force) throws IOException {
+        this.path = path;
+        this.maxBytes = maxBytes;
+        this.force = force;
+        this.channel = open();
+    }
+
+    @Override
+    public void append(List<AuditEvent> batch) throws IOException {
+        StringBuilder lines = new StringBuilder();
+        for (AuditEvent event : batch) {
+            lines.append(Instant.ofEpochMilli(event.getTime())).append('\t')
+                    .append(escape(event.getActor())).append('\t')
+                    .append(escape(event.getAction())).append('\t')
+                    .append(escape(event.getDetail())).append('\n');
+        }
+        ByteBuffer bytes = StandardCharsets.UTF_8.encode(lines.toString());
+        if (channel.size() > 0 && channel.size() + bytes.remaining() > maxBytes) {
+            rotate();
+        }
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+        if (force) {
+            channel.force(false);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // everything written has already been handed to the operating system
+        }
+    }
+
+    private void rotate() throws IOException {
+        channel.force(false);
+        channel.close();
+        String suffix = Instant.now().toString().replace(":", "");
+        Files.move(path, path.resolveSibling(path.getFileName() + "." + suffix), StandardCopyOption.ATOMIC_MOVE);
+        channel = open();
+    }
+
+    private FileChannel open() throws IOException {
+        return FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+    }
+
+    private static String escape(String value) {
+        if (value == null) {
+            return "";
+        }
+        return value.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n").replace("\r", "\\r");
+    }
+}
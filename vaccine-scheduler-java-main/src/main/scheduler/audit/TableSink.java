@@ -0,0 +1,76 @@
+package scheduler.audit;
+
+import scheduler.db.ConnectionManager;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.List;
+
+// Appends to the Audit_Log table, one transaction per batch, so a retried batch is never written twice.
+// The writer keeps a dedicated connection outside the pool: durable callers wait for it while holding pooled
+// connections, so it must never have to wait for one of those.
+class TableSink implements AuditSink {
+
+    private static final int MAX_DETAIL_LENGTH = 1000;
+
+    private ConnectionManager cm = null;
+    private Connection con = null;
+
+    @Override
+    public void append(List<AuditEvent> batch) throws SQLException {
+        Connection con = connection();
+
+        try {
+            PreparedStatement insert = con.prepareStatement("INSERT INTO Audit_Log " +
+                    "(Event_time, Actor, Action, Detail) VALUES (?, ?, ?, ?)");
+            for (AuditEvent event : batch) {
+                insert.setTimestamp(1, new Timestamp(event.getTime()));
+                insert.setString(2, event.getActor());
+                insert.setString(3, event.getAction());
+                String detail = event.getDetail();
+                insert.setString(4, detail != null && detail.length() > MAX_DETAIL_LENGTH ?
+                        detail.substring(0, MAX_DETAIL_LENGTH) : detail);
+                insert.addBatch();
+            }
+            insert.executeBatch();
+            insert.close();
+            con.commit();
+        } catch (SQLException e) {
+            try {
+                con.rollback();
+            } catch (SQLException rollbackError) {
+                e.setNextException(rollbackError);
+            }
+            // the connection may be the problem, so the retry starts on a fresh one
+            close();
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() {
+        if (cm != null) {
+            cm.closeConnection();
+            cm = null;
+            con = null;
+        }
+    }
+
+    private Connection connection() throws SQLException {
+        if (con == null) {
+            ConnectionManager manager = new ConnectionManager();
+            Connection opened = manager.createDedicatedConnection();
+            try {
+                opened.setAutoCommit(false);
+            } catch (SQLException e) {
+                manager.closeConnection();
+                throw e;
+            }
+            cm = manager;
+            con = opened;
+        }
+        return con;
+    }
+}
@@ -0,0 +1,94 @@
+package scheduler.bench;
+
+import scheduler.assign.AssignmentStrategy;
+import scheduler.assign.BookingCounters;
+
+import java.sql.Date;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Compares caregiver assignment strategies under concurrent reservations without a database.
+// Each booking holds a lock on the chosen caregiver for a fixed time, standing in for the row locks
+// that a reservation holds until it commits.
+// Usage: AssignmentBenchmark [threads] [caregivers] [reservations per thread] [lock hold micros]
+public class AssignmentBenchmark {
+
+    private static final String[] STRATEGIES = {"first", "round-robin", "least-booked", "random-of-k"};
+
+    public static void main(String[] args) throws InterruptedException {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        int caregivers = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        int reservations = args.length > 2 ? Integer.parseInt(args[2]) : 2000;
+        long holdNanos = (args.length > 3 ? Long.parseLong(args[3]) : 50) * 1000;
+
+        List<String> candidates = new ArrayList<>();
+        for (int i = 0; i < caregivers; i++) {
+            candidates.add(String.format("caregiver%04d", i));
+        }
+        System.out.println(threads + " threads, " + caregivers + " caregivers, " +
+                reservations + " reservations per thread, " + holdNanos / 1000 + "us lock hold");
+        for (String name : STRATEGIES) {
+            // one warm-up round so every strategy is measured with compiled code
+            run(name, candidates, threads, reservations / 10, holdNanos, false);
+            run(name, candidates, threads, reservations, holdNanos, true);
+        }
+    }
+
+    private static void run(String name, List<String> candidates, int threads, int reservations,
+                            long holdNanos, boolean print) throws InterruptedException {
+        BookingCounters counters = new BookingCounters();
+        AssignmentStrategy strategy = AssignmentStrategy.fromName(name, counters);
+        Date d = Date.valueOf("2030-01-01");
+        ReentrantLock[] locks = new ReentrantLock[candidates.size()];
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new ReentrantLock();
+        }
+
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            new Thread(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < reservations; i++) {
+                        String caregiver = strategy.choose(d, candidates);
+                        ReentrantLock lock = locks[candidates.indexOf(caregiver)];
+                        lock.lock();
+                        try {
+                            // the lock is held while waiting on the database, not while computing
+                            LockSupport.parkNanos(holdNanos);
+                        } finally {
+                            lock.unlock();
+                        }
+                        counters.increment(d, caregiver);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            }).start();
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        done.await();
+        long elapsed = System.nanoTime() - begin;
+
+        if (!print) {
+            return;
+        }
+        int min = Integer.MAX_VALUE;
+        int max = 0;
+        for (String caregiver : candidates) {
+            int count = counters.get(d, caregiver);
+            min = Math.min(min, count);
+            max = Math.max(max, count);
+        }
+        double throughput = (double) threads * reservations / (elapsed / 1e9);
+        System.out.printf("%-13s %10.0f reservations/s, bookings per caregiver min %d max %d%n",
+                name, throughput, min, max);
+    }
+}
@@ -0,0 +1,121 @@
+package scheduler.bench;
+
+import scheduler.util.NameDictionary;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Random;
+
+// Measures what it costs to keep users and their appointments in memory, with names as Strings versus
+// dictionary-encoded as ints. Each appointment row gets fresh String copies of its names, as a JDBC driver
+// hands them out, and references one random patient and one of the caregivers.
+// Usage: DictionaryFootprint [strings | dictionary] [users] [appointments per user]
+// Run each mode in its own JVM (e.g. with -Xmx2g) so the two do not share heap history.
+public class DictionaryFootprint {
+
+    private static final int CAREGIVERS = 10000;
+
+    public static void main(String[] args) {
+        String mode = args.length > 0 ? args[0] : "dictionary";
+        int users = args.length > 1 ? Integer.parseInt(args[1]) : 1000000;
+        int perUser = args.length > 2 ? Integer.parseInt(args[2]) : 2;
+        int appointments = users * perUser;
+
+        long heapBefore = usedHeap();
+        long directBefore = usedDirect();
+        long[] gcBefore = gcTotals();
+        long start = System.nanoTime();
+
+        Object retained;
+        if (mode.equals("strings")) {
+            retained = buildStrings(users, appointments);
+        } else if (mode.equals("dictionary")) {
+            retained = buildDictionary(users, appointments);
+        } else {
+            System.out.println("Unknown mode: " + mode);
+            return;
+        }
+
+        long buildMillis = (System.nanoTime() - start) / 1000000;
+        long[] gcAfter = gcTotals();
+        long heap = usedHeap() - heapBefore;
+        long direct = usedDirect() - directBefore;
+        // a full collection with everything still reachable shows how much work the live set adds to each GC
+        long gcStart = System.nanoTime();
+        System.gc();
+        long fullGcMillis = (System.nanoTime() - gcStart) / 1000000;
+
+        System.out.println(mode + ": " + users + " users, " + appointments + " appointments");
+        System.out.println("Heap: " + heap / (1024 * 1024) + " MB, off-heap: " + direct / (1024 * 1024) + " MB");
+        System.out.println("Build: " + buildMillis + " ms, GCs during build: " + (gcAfter[0] - gcBefore[0]) +
+                " taking " + (gcAfter[1] - gcBefore[1]) + " ms, full GC with data live: " + fullGcMillis + " ms");
+        // keep the data reachable until after the measurements
+        System.out.println("(" + retained.hashCode() % 2 + ")");
+    }
+
+    private static Object[] buildStrings(int users, int appointments) {
+        HashMap<String, Integer> patientIds = new HashMap<>();
+        for (int i = 0; i < users; i++) {
+            patientIds.put(patientName(i), i);
+        }
+        String[] patients = new String[appointments];
+        String[] caregivers = new String[appointments];
+        Random random = new Random(42);
+        for (int i = 0; i < appointments; i++) {
+            patients[i] = new String(patientName(random.nextInt(users)));
+            caregivers[i] = new String(caregiverName(random.nextInt(CAREGIVERS)));
+        }
+        return new Object[]{patientIds, patients, caregivers};
+    }
+
+    private static Object[] buildDictionary(int users, int appointments) {
+        NameDictionary patientIds = new NameDictionary();
+        NameDictionary caregiverIds = new NameDictionary();
+        for (int i = 0; i < users; i++) {
+            patientIds.intern(patientName(i));
+        }
+        int[] patients = new int[appointments];
+        int[] caregivers = new int[appointments];
+        Random random = new Random(42);
+        for (int i = 0; i < appointments; i++) {
+            patients[i] = patientIds.intern(patientName(random.nextInt(users)));
+            caregivers[i] = caregiverIds.intern(caregiverName(random.nextInt(CAREGIVERS)));
+        }
+        return new Object[]{patientIds, caregiverIds, patients, caregivers};
+    }
+
+    private static String patientName(int i) {
+        return "patient_" + Integer.toString(i * 7919 + 104729, 36);
+    }
+
+    private static String caregiverName(int i) {
+        return "caregiver_" + i;
+    }
+
+    private static long usedHeap() {
+        System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static long usedDirect() {
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            if (pool.getName().equals("direct")) {
+                return pool.getMemoryUsed();
+            }
+        }
+        return 0;
+    }
+
+    // collection count and time summed over all collectors
+    private static long[] gcTotals() {
+        long[] totals = new long[2];
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            totals[0] += Math.max(0, gc.getCollectionCount());
+            totals[1] += Math.max(0, gc.getCollectionTime());
+        }
+        return totals;
+    }
+}
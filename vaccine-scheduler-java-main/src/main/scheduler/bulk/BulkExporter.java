@@ -0,0 +1,90 @@
+package scheduler.bulk;
+
+import scheduler.db.ArchivalJob;
+import scheduler.db.ConnectionManager;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+
+public class BulkExporter {
+
+    // rows are pulled from the server in chunks of this size instead of all at once
+    private static final int FETCH_SIZE = 10000;
+    private static final int PROGRESS_INTERVAL = 100000;
+    private static final String EARLIEST_DATE = "1900-01-01";
+
+    private final String query;
+    private final String file;
+    // where progress is reported
+    private final PrintStream out;
+
+    public BulkExporter(String kind, String file, PrintStream out) {
+        this.file = file;
+        this.out = out;
+        // an export covers every date, so once anything may have been archived the archive is read as well
+        boolean includeArchive = ArchivalJob.mayBeArchived(Date.valueOf(EARLIEST_DATE));
+        if (kind.equalsIgnoreCase("appointments")) {
+            this.query = allRows("Appointment_ID, Appointment_time, Patient_Username, Caregiver_Username, " +
+                    "Vaccine_name", "Appointments", "Appointment_ID", includeArchive);
+        } else if (kind.equalsIgnoreCase("availabilities")) {
+            this.query = allRows("Time, Username", "Availabilities", "Time, Username", includeArchive);
+        } else if (kind.equalsIgnoreCase("doses")) {
+            this.query = "SELECT Name, Doses FROM Vaccines ORDER BY Name";
+        } else {
+            throw new IllegalArgumentException("Unknown export type: " + kind);
+        }
+    }
+
+    // Stream the rows straight from the result set to the file, so memory use does not grow with the table
+    public int run() throws IOException, SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        Connection con = cm.createConnection();
+
+        int rows = 0;
+        try (BufferedWriter writer = Files.newBufferedWriter(Paths.get(file), StandardCharsets.UTF_8)) {
+            PreparedStatement statement = con.prepareStatement(query, ResultSet.TYPE_FORWARD_ONLY,
+                    ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(FETCH_SIZE);
+            ResultSet rs = statement.executeQuery();
+            ResultSetMetaData meta = rs.getMetaData();
+            int columns = meta.getColumnCount();
+            for (int i = 1; i <= columns; i++) {
+                writer.write(i == 1 ? "" : ",");
+                writer.write(meta.getColumnLabel(i));
+            }
+            writer.newLine();
+            while (rs.next()) {
+                for (int i = 1; i <= columns; i++) {
+                    writer.write(i == 1 ? "" : ",");
+                    writer.write(Csv.escape(rs.getString(i)));
+                }
+                writer.newLine();
+                rows++;
+                if (rows % PROGRESS_INTERVAL == 0) {
+                    out.println("Progress: " + rows + " rows exported");
+                }
+            }
+        } finally {
+            cm.closeConnection();
+        }
+        return rows;
+    }
+
+    private static String allRows(String columns, String table, String order, boolean includeArchive) {
+        String hot = "SELECT " + columns + " FROM " + table;
+        if (!includeArchive) {
+            return hot + " ORDER BY " + order;
+        }
+        return hot + " UNION ALL SELECT " + columns + " FROM " + table + "_Archive ORDER BY " + order;
+    }
+}
@@ -0,0 +1,280 @@
+package scheduler.bulk;
+
+import scheduler.db.ConnectionManager;
+import scheduler.notify.ScheduleBus;
+import scheduler.util.Util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class BulkImporter {
+
+    // rows are validated, hashed and committed in chunks of this size
+    private static final int CHUNK_SIZE = 1000;
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int WORKERS = Runtime.getRuntime().availableProcessors();
+
+    private final Kind kind;
+    private final Path file;
+    // where progress and rejected rows are reported
+    private final PrintStream out;
+    private int imported = 0;
+    private int rejected = 0;
+
+    public BulkImporter(String kind, String file, PrintStream out) {
+        this.kind = Kind.of(kind);
+        this.file = Paths.get(file);
+        this.out = out;
+    }
+
+    // Getters
+    public int getImported() {
+        return imported;
+    }
+
+    public int getRejected() {
+        return rejected;
+    }
+
+    public void run() throws IOException, SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        Connection con = cm.createConnection();
+        ExecutorService workers = Executors.newFixedThreadPool(WORKERS);
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+             BufferedReader reader = new BufferedReader(
+                     Channels.newReader(channel, StandardCharsets.UTF_8), BUFFER_SIZE)) {
+            con.setAutoCommit(false);
+            PreparedStatement statement = con.prepareStatement(kind.sql);
+            List<Row> chunk = new ArrayList<>(CHUNK_SIZE);
+            Csv csv = new Csv(reader);
+            String[] fields;
+            while ((fields = csv.next()) != null) {
+                boolean blank = fields.length == 1 && fields[0].isBlank();
+                if (blank || (csv.line() == 1 && kind.isHeader(fields))) {
+                    continue;
+                }
+                Row row = new Row(csv.line(), fields);
+                String reason = kind.validate(row.fields);
+                if (reason != null) {
+                    reject(row, reason);
+                    continue;
+                }
+                chunk.add(row);
+                if (chunk.size() == CHUNK_SIZE) {
+                    writeChunk(con, statement, workers, chunk);
+                    chunk.clear();
+                }
+            }
+            if (!chunk.isEmpty()) {
+                writeChunk(con, statement, workers, chunk);
+            }
+        } finally {
+            workers.shutdownNow();
+            try {
+                con.setAutoCommit(true);
+            } catch (SQLException e) {
+                // must not hide the original error; the pool resets the connection when it is returned anyway
+            }
+            cm.closeConnection();
+        }
+        out.println("Import finished: " + imported + " rows imported, " + rejected + " rows rejected");
+    }
+
+    private void writeChunk(Connection con, PreparedStatement statement, ExecutorService workers,
+                            List<Row> chunk) throws SQLException {
+        if (kind.hasPassword) {
+            hashPasswords(workers, chunk);
+        }
+        // the common case: the whole chunk goes in as one batch and one transaction
+        try {
+            for (Row row : chunk) {
+                kind.bind(statement, row);
+                statement.addBatch();
+            }
+            statement.executeBatch();
+            con.commit();
+            imported += chunk.size();
+            for (Row row : chunk) {
+                publish(row);
+            }
+        } catch (SQLException e) {
+            // some row was bad (e.g. a duplicate username), so redo the chunk row by row to find it
+            con.rollback();
+            statement.clearBatch();
+            for (Row row : chunk) {
+                try {
+                    kind.bind(statement, row);
+                    statement.executeUpdate();
+                    con.commit();
+                    imported++;
+                    publish(row);
+                } catch (SQLException rowError) {
+                    con.rollback();
+                    reject(row, rowError.getMessage());
+                }
+            }
+        }
+        out.println("Progress: " + imported + " rows imported, " + rejected + " rows rejected");
+    }
+
+    private static void hashPasswords(ExecutorService workers, List<Row> chunk) {
+        // PBKDF2 dominates the cost of creating accounts, so split it across all cores
+        int slice = (chunk.size() + WORKERS - 1) / WORKERS;
+        List<Future<?>> futures = new ArrayList<>();
+        for (int start = 0; start < chunk.size(); start += slice) {
+            List<Row> rows = chunk.subList(start, Math.min(start + slice, chunk.size()));
+            futures.add(workers.submit(() -> {
+                for (Row row : rows) {
+                    row.salt = Util.generateSalt();
+                    row.hash = Util.generateHash(row.fields[1], row.salt);
+                }
+            }));
+        }
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while hashing passwords");
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    // Tell subscribers about a committed row, as upload_availability and add_doses do
+    private void publish(Row row) {
+        switch (kind) {
+            case AVAILABILITIES:
+                ScheduleBus.availabilityUploaded(Date.valueOf(row.fields[0]), row.fields[1]);
+                break;
+            case DOSES:
+                ScheduleBus.dosesAdded(row.fields[0], Integer.parseInt(row.fields[1]));
+                break;
+            default:
+                // accounts are not part of anyone's schedule
+        }
+    }
+
+    private void reject(Row row, String reason) {
+        rejected++;
+        out.println("Rejected line " + row.line + ": " + reason);
+    }
+
+    private static class Row {
+        private final int line;
+        private final String[] fields;
+        private byte[] salt;
+        private byte[] hash;
+
+        private Row(int line, String[] fields) {
+            this.line = line;
+            this.fields = fields;
+        }
+    }
+
+    private enum Kind {
+        PATIENTS("INSERT INTO Patients VALUES (?, ?, ?)", true, "username"),
+        CAREGIVERS("INSERT INTO Caregivers VALUES (?, ?, ?)", true, "username"),
+        AVAILABILITIES("INSERT INTO Availabilities (Time, Username) VALUES (?, ?)", false, "date", "time"),
+        // HOLDLOCK keeps the key range locked from the match to the insert, so concurrent imports or add_doses
+        // of a new vaccine cannot both take the NOT MATCHED branch
+        DOSES("MERGE Vaccines WITH (HOLDLOCK) AS v USING (SELECT ? AS Name, ? AS Doses) AS s ON v.Name = s.Name " +
+                "WHEN MATCHED THEN UPDATE SET Doses = v.Doses + s.Doses " +
+                "WHEN NOT MATCHED THEN INSERT (Name, Doses) VALUES (s.Name, s.Doses);", false, "vaccine", "name");
+
+        private final String sql;
+        private final boolean hasPassword;
+        // accepted names of the first column when the file starts with a header line
+        private final String[] headers;
+
+        Kind(String sql, boolean hasPassword, String... headers) {
+            this.sql = sql;
+            this.hasPassword = hasPassword;
+            this.headers = headers;
+        }
+
+        private static Kind of(String name) {
+            for (Kind kind : values()) {
+                if (kind.name().equalsIgnoreCase(name)) {
+                    return kind;
+                }
+            }
+            throw new IllegalArgumentException("Unknown import type: " + name);
+        }
+
+        private boolean isHeader(String[] fields) {
+            String first = fields[0].trim();
+            for (String header : headers) {
+                if (first.equalsIgnoreCase(header)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        // Returns why the row cannot be imported, or null if it looks valid
+        private String validate(String[] fields) {
+            if (fields.length != 2) {
+                return "expected 2 columns but found " + fields.length;
+            }
+            if (fields[0].isEmpty() || fields[1].isEmpty()) {
+                return "empty column";
+            }
+            switch (this) {
+                case PATIENTS:
+                case CAREGIVERS:
+                    return Util.strongPassword(fields[1]) ? null : "password is not strong";
+                case AVAILABILITIES:
+                    try {
+                        Date.valueOf(fields[0]);
+                        return null;
+                    } catch (IllegalArgumentException e) {
+                        return "invalid date " + fields[0];
+                    }
+                default:
+                    try {
+                        return Integer.parseInt(fields[1]) > 0 ? null : "doses must be positive";
+                    } catch (NumberFormatException e) {
+                        return "invalid number of doses " + fields[1];
+                    }
+            }
+        }
+
+        private void bind(PreparedStatement statement, Row row) throws SQLException {
+            switch (this) {
+                case PATIENTS:
+                case CAREGIVERS:
+                    statement.setString(1, row.fields[0]);
+                    statement.setBytes(2, row.salt);
+                    statement.setBytes(3, row.hash);
+                    break;
+                case AVAILABILITIES:
+                    statement.setDate(1, Date.valueOf(row.fields[0]));
+                    statement.setString(2, row.fields[1]);
+                    break;
+                default:
+                    statement.setString(1, row.fields[0]);
+                    statement.setInt(2, Integer.parseInt(row.fields[1]));
+            }
+        }
+    }
+}
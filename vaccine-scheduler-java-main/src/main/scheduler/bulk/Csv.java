@@ -0,0 +1,82 @@
+package scheduler.bulk;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+// The CSV format shared by import and export (RFC 4180): a field holding a comma, a quote or a line break is
+// quoted, and a quote inside it is doubled. A quoted field may span lines.
+class Csv {
+
+    private final BufferedReader reader;
+    private int lineNumber = 0;
+    private int recordLine = 0;
+
+    Csv(BufferedReader reader) {
+        this.reader = reader;
+    }
+
+    // Read the next record, or return null at the end of the input
+    String[] next() throws IOException {
+        String line = reader.readLine();
+        if (line == null) {
+            return null;
+        }
+        lineNumber++;
+        recordLine = lineNumber;
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        int i = 0;
+        while (true) {
+            if (i == line.length()) {
+                String more = quoted ? reader.readLine() : null;
+                if (more == null) {
+                    // an unterminated quote ends with the input
+                    fields.add(field.toString());
+                    return fields.toArray(new String[0]);
+                }
+                lineNumber++;
+                field.append('\n');
+                line = more;
+                i = 0;
+                continue;
+            }
+            char c = line.charAt(i++);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i < line.length() && line.charAt(i) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '"' && field.length() == 0) {
+                quoted = true;
+            } else {
+                field.append(c);
+            }
+        }
+    }
+
+    // Line of the input on which the record last returned by next starts, counting from 1
+    int line() {
+        return recordLine;
+    }
+
+    static String escape(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 &&
+                value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
@@ -0,0 +1,107 @@
+package scheduler.db;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+public class ArchivalJob {
+
+    // constants for how much is archived and how often
+    private static final int DEFAULT_HORIZON_DAYS = 90;
+    private static final int BATCH_SIZE = 5000;
+    private static final long INTERVAL_MINUTES = 60;
+
+    // rows older than this many days are moved to the archive tables; a negative value disables archival
+    private static final int HORIZON_DAYS = loadHorizon();
+
+    // each batch moves rows in a single statement, so a row is always in exactly one of the two tables
+    private static final String ARCHIVE_APPOINTMENTS = "DELETE TOP (?) FROM Appointments " +
+            "OUTPUT DELETED.Appointment_ID, DELETED.Appointment_time, DELETED.Patient_Username, " +
+            "DELETED.Caregiver_Username, DELETED.Vaccine_name INTO Appointments_Archive " +
+            "WHERE Appointment_time < ?";
+    private static final String ARCHIVE_AVAILABILITIES = "DELETE TOP (?) FROM Availabilities " +
+            "OUTPUT DELETED.Time, DELETED.Username, DELETED.Site_ID " +
+            "INTO Availabilities_Archive (Time, Username, Site_ID) WHERE Time < ?";
+
+    private static ScheduledExecutorService executor = null;
+
+    // Start archiving in the background, once now and then every INTERVAL_MINUTES
+    public static synchronized void start() {
+        if (executor != null || HORIZON_DAYS < 0) {
+            return;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "archival-job");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(() -> {
+            try {
+                archive();
+            } catch (SQLException | RuntimeException e) {
+                // the next run picks up where this one stopped; an exception escaping here would cancel every
+                // later run
+                System.err.println("Archival failed: " + e);
+            }
+        }, 0, INTERVAL_MINUTES, TimeUnit.MINUTES);
+    }
+
+    public static synchronized void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    // Returns false when no row on or after the given date can have been archived, so readers can skip the archive
+    public static boolean mayBeArchived(Date from) {
+        return HORIZON_DAYS >= 0 && from.toLocalDate().isBefore(cutoff());
+    }
+
+    // Move every row before the horizon to the archive, in batches that keep locks and the log small
+    public static int archive() throws SQLException {
+        Date cutoff = Date.valueOf(cutoff());
+        return moveBatches(ARCHIVE_APPOINTMENTS, cutoff) + moveBatches(ARCHIVE_AVAILABILITIES, cutoff);
+    }
+
+    private static int moveBatches(String sql, Date cutoff) throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        Connection con = cm.createConnection();
+
+        int total = 0;
+        try {
+            PreparedStatement statement = con.prepareStatement(sql);
+            statement.setInt(1, BATCH_SIZE);
+            statement.setDate(2, cutoff);
+            int moved;
+            do {
+                moved = statement.executeUpdate();
+                total += moved;
+            } while (moved == BATCH_SIZE);
+        } finally {
+            cm.closeConnection();
+        }
+        return total;
+    }
+
+    private static LocalDate cutoff() {
+        return LocalDate.now().minusDays(HORIZON_DAYS);
+    }
+
+    private static int loadHorizon() {
+        String horizon = System.getenv("ArchiveHorizonDays");
+        if (horizon == null) {
+            return DEFAULT_HORIZON_DAYS;
+        }
+        try {
+            return Integer.parseInt(horizon);
+        } catch (NumberFormatException e) {
+            return DEFAULT_HORIZON_DAYS;
+        }
+    }
+}
@@ -1,14 +1,17 @@
 package scheduler.db;
 
+import scheduler.error.TransientException;
+
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
 
 public class ConnectionManager {
 
     private final String driverName = "com.microsoft.sqlserver.jdbc.SQLServerDriver";
-    private final String connectionUrl = "jdbc:sqlserver://" + System.getenv("Server") +
-            ".database.windows.net:1433;database=" + System.getenv("DBName");
+    // ConnectionUrl overrides the Azure server, e.g. to point a load test at a local or embedded database
+    private final String connectionUrl = System.getenv("ConnectionUrl") != null ? System.getenv("ConnectionUrl") :
+            "jdbc:sqlserver://" + System.getenv("Server") + ".database.windows.net:1433;database=" +
+            System.getenv("DBName");
     private final String userName = System.getenv("UserID");
     private final String userPass = System.getenv("Password");
 
@@ -20,22 +23,37 @@ public class ConnectionManager {
         } catch (ClassNotFoundException e) {
             System.out.println(e.toString());
         }
+        ConnectionPool.configure(connectionUrl, userName, userPass);
     }
 
-    public Connection createConnection() {
+    // Borrows a pooled connection; closeConnection hands it back
+    public Connection createConnection() throws SQLException {
         try {
-            con = DriverManager.getConnection(connectionUrl, userName, userPass);
+            con = ConnectionPool.borrow();
+        } catch (TransientException e) {
+            throw e;
         } catch (SQLException e) {
-            e.printStackTrace();
+            // not being able to connect is the typical failover symptom, so it is reported as transient
+            throw new TransientException(e);
         }
         return con;
     }
 
+    // Opens a connection of its own, outside the pool, for a background writer that must keep working while
+    // commands hold every pooled connection; closeConnection closes it
+    public Connection createDedicatedConnection() throws SQLException {
+        con = ConnectionPool.open();
+        return con;
+    }
+
     public void closeConnection() {
+        if (this.con == null) {
+            return;
+        }
         try {
             this.con.close();
         } catch (SQLException e) {
-            e.printStackTrace();
+            // nothing left to do with a connection that cannot even be closed
         }
     }
 }
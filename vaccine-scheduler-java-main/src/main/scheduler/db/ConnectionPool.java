@@ -0,0 +1,359 @@
+package scheduler.db;
+
+import scheduler.admission.AdmissionControl;
+import scheduler.error.TransientException;
+
+import java.lang.ref.Cleaner;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// A small pool of database connections. Callers keep using ConnectionManager: createConnection borrows a
+// connection and closeConnection returns it. createDedicatedConnection opens one outside the pool instead.
+//
+// Leak detection: every borrowed connection is a proxy that remembers where it was borrowed and which
+// statements were created on it.
+// - A connection held longer than LeakDetectionSeconds is reported once, with the borrowing stack.
+// - A connection that becomes unreachable without being returned is reported and closed by a Cleaner.
+// - Statements still open when the connection is returned are closed, since a pooled connection is never
+//   really closed and would otherwise keep them (and their server-side handles) forever. Callers rely on
+//   this instead of closing each statement, so those are not counted as leaks.
+public class ConnectionPool {
+
+    // constants for sizing the pool and detecting leaks
+    private static final int DEFAULT_SIZE = 10;
+    private static final int DEFAULT_LEAK_DETECTION_SECONDS = 60;
+    private static final long BORROW_TIMEOUT_MILLIS = 30000;
+    // an idle connection is validated before reuse if it has not been used for this long
+    private static final long VALIDATE_AFTER_IDLE_MILLIS = 30000;
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+    private static final long HOUSEKEEPING_INTERVAL_SECONDS = 10;
+
+    private static final int SIZE = loadSetting("PoolSize", DEFAULT_SIZE);
+    private static final long LEAK_DETECTION_MILLIS =
+            loadSetting("LeakDetectionSeconds", DEFAULT_LEAK_DETECTION_SECONDS) * 1000L;
+
+    private static final Cleaner cleaner = Cleaner.create();
+    // bounds the number of open connections; a permit is held for every connection that is borrowed
+    private static final Semaphore permits = new Semaphore(SIZE, true);
+    private static final ArrayDeque<Idle> idle = new ArrayDeque<>();
+    private static final Set<Lease> leases = ConcurrentHashMap.newKeySet();
+    private static final LongAdder leakedConnections = new LongAdder();
+    private static ScheduledExecutorService housekeeper = null;
+    private static boolean closed = false;
+
+    private static String url;
+    private static String user;
+    private static String password;
+
+    static synchronized void configure(String url, String user, String password) {
+        ConnectionPool.url = url;
+        ConnectionPool.user = user;
+        ConnectionPool.password = password;
+        if (housekeeper == null && LEAK_DETECTION_MILLIS > 0) {
+            housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "connection-pool-housekeeper");
+                thread.setDaemon(true);
+                return thread;
+            });
+            housekeeper.scheduleWithFixedDelay(ConnectionPool::reportLongLeases,
+                    HOUSEKEEPING_INTERVAL_SECONDS, HOUSEKEEPING_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    // Borrow a connection, waiting up to BORROW_TIMEOUT_MILLIS for one to be returned if the pool is exhausted
+    static Connection borrow() throws SQLException {
+        return borrow(BORROW_TIMEOUT_MILLIS);
+    }
+
+    static Connection borrow(long timeoutMillis) throws SQLException {
+        long requestedAt = System.nanoTime();
+        boolean sampled = AdmissionControl.inAdmittedCommand();
+        try {
+            if (!permits.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                if (sampled) {
+                    AdmissionControl.recordDatabaseLatency(System.nanoTime() - requestedAt);
+                }
+                throw new TransientException("Timed out waiting for a database connection");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TransientException("Interrupted while waiting for a database connection");
+        }
+        try {
+            Connection physical = takeIdle();
+            if (physical == null) {
+                physical = DriverManager.getConnection(url, user, password);
+            }
+            Lease lease = new Lease(physical, LEAK_DETECTION_MILLIS > 0 ? new Throwable("Borrowed here") : null,
+                    requestedAt, sampled);
+            Connection proxy = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, new Handler(lease));
+            leases.add(lease);
+            lease.cleanable = cleaner.register(proxy, lease::reclaim);
+            return proxy;
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    // A physical connection that is not counted against the pool and not tracked by it
+    static Connection open() throws SQLException {
+        return DriverManager.getConnection(url, user, password);
+    }
+
+    // Close every idle connection and stop handing out new ones; borrowed ones are closed when returned
+    public static void close() {
+        List<Connection> toClose;
+        synchronized (ConnectionPool.class) {
+            closed = true;
+            toClose = new ArrayList<>();
+            for (Idle entry : idle) {
+                toClose.add(entry.connection);
+            }
+            idle.clear();
+            if (housekeeper != null) {
+                housekeeper.shutdownNow();
+                housekeeper = null;
+            }
+        }
+        for (Connection con : toClose) {
+            closeQuietly(con);
+        }
+    }
+
+    public static int size() {
+        return SIZE;
+    }
+
+    public static int borrowed() {
+        return leases.size();
+    }
+
+    public static synchronized int idle() {
+        return idle.size();
+    }
+
+    public static long leakedConnections() {
+        return leakedConnections.sum();
+    }
+
+    private static Connection takeIdle() {
+        while (true) {
+            Idle entry;
+            synchronized (ConnectionPool.class) {
+                entry = idle.pollLast();
+            }
+            if (entry == null) {
+                return null;
+            }
+            // a connection that sat idle may have been dropped by the server or a failover
+            if (System.currentTimeMillis() - entry.since < VALIDATE_AFTER_IDLE_MILLIS || isValid(entry.connection)) {
+                return entry.connection;
+            }
+            closeQuietly(entry.connection);
+        }
+    }
+
+    private static void giveBack(Lease lease) {
+        leases.remove(lease);
+        // the time from asking for the connection to giving it back covers both waiting for the pool and the
+        // work done on the connection, which is what admission control adapts to
+        if (lease.sampled) {
+            AdmissionControl.recordDatabaseLatency(System.nanoTime() - lease.requestedAt);
+        }
+        try {
+            Connection physical = lease.physical;
+            boolean reusable = !physical.isClosed();
+            if (reusable && !physical.getAutoCommit()) {
+                // whatever the borrower left uncommitted is abandoned, like when a connection is closed
+                physical.rollback();
+                physical.setAutoCommit(true);
+            }
+            synchronized (ConnectionPool.class) {
+                if (reusable && !closed) {
+                    idle.addLast(new Idle(physical));
+                    return;
+                }
+            }
+            closeQuietly(physical);
+        } catch (SQLException e) {
+            closeQuietly(lease.physical);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private static void reportLongLeases() {
+        long now = System.currentTimeMillis();
+        for (Lease lease : leases) {
+            if (!lease.reported && now - lease.borrowedAt > LEAK_DETECTION_MILLIS) {
+                lease.reported = true;
+                System.err.println("Possible connection leak: held for " + (now - lease.borrowedAt) / 1000 + "s");
+                lease.site.printStackTrace();
+            }
+        }
+    }
+
+    private static boolean isValid(Connection con) {
+        try {
+            return con.isValid(VALIDATION_TIMEOUT_SECONDS);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private static void closeQuietly(Connection con) {
+        try {
+            con.close();
+        } catch (SQLException e) {
+            // nothing left to do with a connection that cannot even be closed
+        }
+    }
+
+    private static int loadSetting(String name, int defaultValue) {
+        String value = System.getenv(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    private static class Idle {
+        private final Connection connection;
+        private final long since = System.currentTimeMillis();
+
+        private Idle(Connection connection) {
+            this.connection = connection;
+        }
+    }
+
+    // One borrowing of a physical connection. It must not reference the proxy, or the Cleaner would never run.
+    private static class Lease {
+        private final Connection physical;
+        private final Throwable site;
+        private final long borrowedAt = System.currentTimeMillis();
+        private final long requestedAt;
+        // whether the borrower is a command under admission control
+        private final boolean sampled;
+        private final List<Statement> statements = new ArrayList<>();
+        private Cleaner.Cleanable cleanable;
+        private volatile boolean reported = false;
+        private volatile boolean returned = false;
+
+        private Lease(Connection physical, Throwable site, long requestedAt, boolean sampled) {
+            this.physical = physical;
+            this.site = site;
+            this.requestedAt = requestedAt;
+            this.sampled = sampled;
+        }
+
+        private synchronized void track(Statement statement) {
+            // forget the ones already closed so a long-lived connection does not pile them up
+            statements.removeIf(ConnectionPool::isClosed);
+            statements.add(statement);
+        }
+
+        // Called when the borrower closes the connection
+        private void release() {
+            synchronized (this) {
+                if (returned) {
+                    return;
+                }
+                returned = true;
+                for (Statement statement : statements) {
+                    if (!isClosed(statement)) {
+                        try {
+                            statement.close();
+                        } catch (SQLException e) {
+                            // closing the statement is best effort
+                        }
+                    }
+                }
+                statements.clear();
+            }
+            cleanable.clean();
+            giveBack(this);
+        }
+
+        // Called by the Cleaner, either after release or when the proxy was dropped without being closed
+        private void reclaim() {
+            synchronized (this) {
+                if (returned) {
+                    return;
+                }
+                returned = true;
+            }
+            leakedConnections.increment();
+            System.err.println("Connection leak: a connection was never closed");
+            if (site != null) {
+                site.printStackTrace();
+            }
+            // the borrower's state is unknown, so the connection is not reused
+            closeQuietly(physical);
+            leases.remove(this);
+            permits.release();
+        }
+    }
+
+    private static boolean isClosed(Statement statement) {
+        try {
+            return statement.isClosed();
+        } catch (SQLException e) {
+            return true;
+        }
+    }
+
+    // Forwards everything to the physical connection, except close, which returns it to the pool
+    private static class Handler implements InvocationHandler {
+        private final Lease lease;
+
+        private Handler(Lease lease) {
+            this.lease = lease;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.equals("close") && method.getParameterCount() == 0) {
+                lease.release();
+                return null;
+            }
+            if (name.equals("isClosed") && method.getParameterCount() == 0) {
+                return lease.returned || lease.physical.isClosed();
+            }
+            if (lease.returned) {
+                throw new SQLException("Connection has been returned to the pool");
+            }
+            try {
+                Object result = method.invoke(lease.physical, args);
+                if (result instanceof Statement) {
+                    lease.track((Statement) result);
+                }
+                return result;
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package scheduler.db;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Checks whether the database is reachable. Probes may arrive every second from several sources, so the
+// result is cached for CACHE_MILLIS and only one caller at a time refreshes it; the others get the last result.
+public class HealthCheck {
+
+    // constants for how often and how long the database is probed
+    private static final long CACHE_MILLIS = 5000;
+    private static final long PROBE_TIMEOUT_MILLIS = 2000;
+    private static final int QUERY_TIMEOUT_SECONDS = 2;
+
+    private static final AtomicBoolean refreshing = new AtomicBoolean(false);
+    private static volatile boolean reachable = false;
+    private static volatile long checkedAt = 0;
+    private static volatile long lastReachableAt = System.currentTimeMillis();
+
+    public static boolean databaseReachable() {
+        if (System.currentTimeMillis() - checkedAt > CACHE_MILLIS && refreshing.compareAndSet(false, true)) {
+            try {
+                reachable = probe();
+                checkedAt = System.currentTimeMillis();
+                if (reachable) {
+                    lastReachableAt = checkedAt;
+                }
+            } finally {
+                refreshing.set(false);
+            }
+        }
+        return reachable;
+    }
+
+    // How long the database has been unreachable, 0 if it is reachable
+    public static long unreachableForMillis() {
+        return databaseReachable() ? 0 : System.currentTimeMillis() - lastReachableAt;
+    }
+
+    private static boolean probe() {
+        // the constructor makes sure the pool knows where to connect
+        new ConnectionManager();
+        Connection con = null;
+        try {
+            // a probe must answer quickly, so it does not queue behind commands for a pooled connection
+            con = ConnectionPool.borrow(PROBE_TIMEOUT_MILLIS);
+            Statement statement = con.createStatement();
+            statement.setQueryTimeout(QUERY_TIMEOUT_SECONDS);
+            statement.executeQuery("SELECT 1").close();
+            statement.close();
+            return true;
+        } catch (SQLException e) {
+            return false;
+        } finally {
+            if (con != null) {
+                try {
+                    con.close();
+                } catch (SQLException e) {
+                    // the pool discards connections it cannot reuse
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package scheduler.db;
+
+import scheduler.error.InvalidInputException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Results of requests sent with an idempotency key, so a retried request gets the original answer instead of
+// running twice. Keys belong to a user in a role: a patient and a caregiver may share a username. A key is
+// also bound to the command it was first sent with (by a hash of its text), and reusing it for another
+// command is rejected rather than answered with the first command's result.
+public class IdempotencyStore {
+
+    // constants for how long and how many request keys are remembered
+    private static final long TTL_MILLIS = 24 * 60 * 60 * 1000;
+    private static final long PURGE_INTERVAL_MILLIS = 10 * 60 * 1000;
+    private static final long PURGE_RETRY_MILLIS = 60 * 1000;
+    // expired keys are deleted this many at a time, so the purge never holds many locks at once
+    private static final int PURGE_BATCH = 1000;
+    private static final int CACHE_SIZE = 10000;
+
+    private static final AtomicLong lastPurge = new AtomicLong(0);
+    private static final AtomicBoolean purging = new AtomicBoolean(false);
+
+    // recently seen keys, so a retry from this process does not even need a query
+    private static final Map<String, Entry> cache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    // Returns the stored result of an earlier request with the same key, or null if there is none; throws
+    // InvalidInputException if the key was used for a different command
+    public static String lookup(String role, String username, String key, String command) throws SQLException {
+        String commandHash = hash(command);
+        synchronized (cache) {
+            Entry entry = cache.get(cacheKey(role, username, key));
+            if (entry != null && !entry.isExpired()) {
+                return entry.resultFor(commandHash);
+            }
+        }
+
+        ConnectionManager cm = new ConnectionManager();
+        Connection con = cm.createConnection();
+
+        String getResult = "SELECT Result, Created, Command_Hash FROM Request_Keys " +
+                "WHERE Role = ? AND Username = ? AND Request_Key = ?";
+        try {
+            PreparedStatement statement = con.prepareStatement(getResult);
+            statement.setString(1, role);
+            statement.setString(2, username);
+            statement.setString(3, key);
+            ResultSet resultSet = statement.executeQuery();
+            if (resultSet.next()) {
+                Entry entry = new Entry(resultSet.getString(1), resultSet.getTimestamp(2).getTime(),
+                        resultSet.getString(3));
+                if (!entry.isExpired()) {
+                    remember(role, username, key, entry);
+                    return entry.resultFor(commandHash);
+                }
+            }
+            return null;
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    // Record the result inside the caller's transaction, so the key exists if and only if the write happened;
+    // a concurrent request with the same key fails here with a duplicate key and rolls back
+    public static void record(Connection con, String role, String username, String key, String command,
+                              String result) throws SQLException {
+        long now = System.currentTimeMillis();
+        // an expired row for the same key may still be around, in which case the key can be reused
+        PreparedStatement removeExpired = con.prepareStatement(
+                "DELETE FROM Request_Keys WHERE Role = ? AND Username = ? AND Request_Key = ? AND Created < ?");
+        removeExpired.setString(1, role);
+        removeExpired.setString(2, username);
+        removeExpired.setString(3, key);
+        removeExpired.setTimestamp(4, new Timestamp(now - TTL_MILLIS));
+        removeExpired.executeUpdate();
+
+        PreparedStatement statement = con.prepareStatement(
+                "INSERT INTO Request_Keys (Role, Username, Request_Key, Result, Created, Command_Hash) " +
+                        "VALUES (?, ?, ?, ?, ?, ?)");
+        statement.setString(1, role);
+        statement.setString(2, username);
+        statement.setString(3, key);
+        statement.setString(4, result);
+        statement.setTimestamp(5, new Timestamp(now));
+        statement.setString(6, hash(command));
+        statement.executeUpdate();
+
+        // the other expired keys are purged in the background, outside the caller's transaction
+        if (now - lastPurge.get() > PURGE_INTERVAL_MILLIS && purging.compareAndSet(false, true)) {
+            Thread purger = new Thread(IdempotencyStore::purgeExpired, "request-key-purge");
+            purger.setDaemon(true);
+            purger.start();
+        }
+    }
+
+    // Cache a result once the transaction that recorded it has committed
+    public static void remember(String role, String username, String key, String command, String result) {
+        remember(role, username, key, new Entry(result, System.currentTimeMillis(), hash(command)));
+    }
+
+    private static void remember(String role, String username, String key, Entry entry) {
+        synchronized (cache) {
+            cache.put(cacheKey(role, username, key), entry);
+        }
+    }
+
+    private static String cacheKey(String role, String username, String key) {
+        return role + ":" + username + ":" + key;
+    }
+
+    private static String hash(String command) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(command.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Delete expired keys on a connection of its own, a batch per autocommitted statement
+    private static void purgeExpired() {
+        long now = System.currentTimeMillis();
+        ConnectionManager cm = new ConnectionManager();
+        try {
+            Connection con = cm.createConnection();
+            PreparedStatement purge = con.prepareStatement("DELETE TOP (?) FROM Request_Keys WHERE Created < ?");
+            purge.setInt(1, PURGE_BATCH);
+            purge.setTimestamp(2, new Timestamp(now - TTL_MILLIS));
+            while (purge.executeUpdate() == PURGE_BATCH) {
+                // more expired keys are left
+            }
+            lastPurge.set(now);
+        } catch (SQLException e) {
+            // try again after a short while rather than a whole interval
+            lastPurge.set(now - PURGE_INTERVAL_MILLIS + PURGE_RETRY_MILLIS);
+        } finally {
+            cm.closeConnection();
+            purging.set(false);
+        }
+    }
+
+    private static class Entry {
+        private final String result;
+        private final long created;
+        private final String commandHash;
+
+        private Entry(String result, long created, String commandHash) {
+            this.result = result;
+            this.created = created;
+            this.commandHash = commandHash;
+        }
+
+        private String resultFor(String commandHash) throws InvalidInputException {
+            // keys recorded before they were bound to commands have no hash and match any command
+            if (this.commandHash != null && !this.commandHash.equals(commandHash)) {
+                throw new InvalidInputException("Request key was already used for a different command!");
+            }
+            return result;
+        }
+
+        private boolean isExpired() {
+            return System.currentTimeMillis() - created > TTL_MILLIS;
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package scheduler.db;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+
+public class MigrationRunner {
+
+    // schema scripts in the order they must be applied; append new ones, never edit or reorder applied ones.
+    // The checksum of every applied script is stored, and migrate refuses to run if one has changed since.
+    private static final String[] MIGRATIONS = {
+            "V1__hot_query_indexes.sql",
+            "V2__non_negative_doses.sql",
+            "V3__archive_tables.sql",
+            "V4__dose_series.sql",
+            "V5__audit_log.sql",
+            "V6__sites.sql",
+            "V7__series_bounds.sql",
+            "V8__request_keys.sql",
+            "V9__series_min_interval.sql",
+            "V10__request_key_commands.sql",
+    };
+    private static final String MIGRATION_PATH = "/resources/migrations/";
+
+    // application lock held while migrating, so instances starting together apply each script once
+    private static final String LOCK_NAME = "scheduler_schema_migrations";
+    private static final int LOCK_TIMEOUT_MILLIS = 60000;
+
+    // Apply every migration that has not been applied yet; returns how many were applied
+    public static int migrate() throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        Connection con = cm.createConnection();
+
+        try {
+            acquireLock(con);
+            try {
+                createVersionTable(con);
+                Map<Integer, String> applied = appliedVersions(con);
+                int count = 0;
+                for (String migration : MIGRATIONS) {
+                    int version = versionOf(migration);
+                    String script = load(migration);
+                    String checksum = checksumOf(script);
+                    if (!applied.containsKey(version)) {
+                        apply(con, version, migration, script, checksum);
+                        count++;
+                    } else if (applied.get(version) == null) {
+                        // applied before checksums were kept
+                        recordChecksum(con, version, checksum);
+                    } else if (!applied.get(version).equals(checksum)) {
+                        throw new SQLException("Schema migration " + migration + " was changed after it was applied");
+                    }
+                }
+                return count;
+            } finally {
+                releaseLock(con);
+            }
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    private static void apply(Connection con, int version, String migration, String script, String checksum)
+            throws SQLException {
+        con.setAutoCommit(false);
+        try {
+            Statement statement = con.createStatement();
+            // GO separates batches, as in SQL Server tools; some DDL must be the only statement of its batch
+            for (String batch : script.split("(?im)^\\s*GO\\s*$")) {
+                if (!batch.isBlank()) {
+                    statement.execute(batch);
+                }
+            }
+            PreparedStatement record = con.prepareStatement("INSERT INTO Schema_Version " +
+                    "(Version, Name, Applied, Checksum) VALUES (?, ?, ?, ?)");
+            record.setInt(1, version);
+            record.setString(2, migration);
+            record.setTimestamp(3, new Timestamp(System.currentTimeMillis()));
+            record.setString(4, checksum);
+            record.executeUpdate();
+            con.commit();
+            System.out.println("Applied schema migration " + migration);
+        } catch (SQLException e) {
+            con.rollback();
+            throw e;
+        } finally {
+            con.setAutoCommit(true);
+        }
+    }
+
+    private static void acquireLock(Connection con) throws SQLException {
+        CallableStatement lock = con.prepareCall("{? = call sp_getapplock(?, ?, ?, ?)}");
+        lock.registerOutParameter(1, java.sql.Types.INTEGER);
+        lock.setString(2, LOCK_NAME);
+        lock.setString(3, "Exclusive");
+        lock.setString(4, "Session");
+        lock.setInt(5, LOCK_TIMEOUT_MILLIS);
+        lock.execute();
+        // 0 and 1 mean granted (immediately or after waiting), negative values mean timeout or failure
+        if (lock.getInt(1) < 0) {
+            throw new SQLException("Could not acquire the schema migration lock");
+        }
+    }
+
+    private static void releaseLock(Connection con) throws SQLException {
+        CallableStatement unlock = con.prepareCall("{call sp_releaseapplock(?, ?)}");
+        unlock.setString(1, LOCK_NAME);
+        unlock.setString(2, "Session");
+        unlock.execute();
+    }
+
+    private static void createVersionTable(Connection con) throws SQLException {
+        con.createStatement().execute("IF OBJECT_ID('Schema_Version') IS NULL " +
+                "CREATE TABLE Schema_Version (Version int PRIMARY KEY, Name varchar(255), Applied datetime2, " +
+                "Checksum char(64))");
+        con.createStatement().execute("IF COL_LENGTH('Schema_Version', 'Checksum') IS NULL " +
+                "ALTER TABLE Schema_Version ADD Checksum char(64)");
+    }
+
+    // Applied versions and their checksums, which are null for scripts applied before checksums were kept
+    private static Map<Integer, String> appliedVersions(Connection con) throws SQLException {
+        Map<Integer, String> versions = new HashMap<>();
+        ResultSet rs = con.createStatement().executeQuery("SELECT Version, Checksum FROM Schema_Version");
+        while (rs.next()) {
+            versions.put(rs.getInt(1), rs.getString(2));
+        }
+        return versions;
+    }
+
+    private static void recordChecksum(Connection con, int version, String checksum) throws SQLException {
+        PreparedStatement update = con.prepareStatement("UPDATE Schema_Version SET Checksum = ? WHERE Version = ?");
+        update.setString(1, checksum);
+        update.setInt(2, version);
+        update.executeUpdate();
+    }
+
+    // SHA-256 of the script, ignoring carriage returns so a checkout with Windows line endings matches
+    private static String checksumOf(String script) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(script.replace("\r", "").getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static int versionOf(String migration) {
+        return Integer.parseInt(migration.substring(1, migration.indexOf("__")));
+    }
+
+    private static String load(String migration) throws SQLException {
+        try (InputStream in = MigrationRunner.class.getResourceAsStream(MIGRATION_PATH + migration)) {
+            if (in == null) {
+                throw new SQLException("Missing schema migration " + migration);
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new SQLException("Could not read schema migration " + migration, e);
+        }
+    }
+}
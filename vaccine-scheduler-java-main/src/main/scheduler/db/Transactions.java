@@ -0,0 +1,68 @@
+package scheduler.db;
+
+import scheduler.error.SqlErrors;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
+
+public class Transactions {
+
+    // constants for retrying transient failures
+    private static final int MAX_ATTEMPTS = 5;
+    private static final long BASE_BACKOFF_MILLIS = 50;
+    private static final long MAX_BACKOFF_MILLIS = 2000;
+
+    public interface Work<T> {
+        T run(Connection con) throws SQLException;
+    }
+
+    // Run the work in a single transaction, retrying it from the start with exponential backoff
+    // if it fails with a transient error; the work must therefore only touch the database.
+    // Failures are thrown as typed SchedulerExceptions.
+    public static <T> T run(Work<T> work) throws SQLException {
+        int attempt = 1;
+        while (true) {
+            try {
+                return runOnce(work);
+            } catch (SQLException e) {
+                if (attempt >= MAX_ATTEMPTS || !SqlErrors.isTransient(e)) {
+                    throw SqlErrors.classify(e);
+                }
+            }
+            backoff(attempt++);
+        }
+    }
+
+    private static <T> T runOnce(Work<T> work) throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        Connection con = cm.createConnection();
+
+        try {
+            con.setAutoCommit(false);
+            T result = work.run(con);
+            con.commit();
+            return result;
+        } catch (SQLException e) {
+            try {
+                con.rollback();
+            } catch (SQLException rollbackError) {
+                e.setNextException(rollbackError);
+            }
+            throw e;
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    private static void backoff(int attempt) throws SQLException {
+        // full jitter keeps retrying clients from colliding again in lockstep
+        long cap = Math.min(MAX_BACKOFF_MILLIS, BASE_BACKOFF_MILLIS << attempt);
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(cap + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting to retry");
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package scheduler.error;
+
+import java.sql.SQLException;
+
+public class DuplicateKeyException extends SchedulerException {
+
+    private static final long serialVersionUID = 1L;
+
+    public DuplicateKeyException(String message) {
+        super(Kind.DUPLICATE_KEY, message, null);
+    }
+
+    public DuplicateKeyException(SQLException cause) {
+        super(Kind.DUPLICATE_KEY, "A row with the same key already exists", cause);
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+}
@@ -0,0 +1,25 @@
+package scheduler.error;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+// Number of errors of each kind since startup
+public class ErrorCounters {
+
+    private static final Map<SchedulerException.Kind, LongAdder> counts = new EnumMap<>(SchedulerException.Kind.class);
+
+    static {
+        for (SchedulerException.Kind kind : SchedulerException.Kind.values()) {
+            counts.put(kind, new LongAdder());
+        }
+    }
+
+    static void increment(SchedulerException.Kind kind) {
+        counts.get(kind).increment();
+    }
+
+    public static long get(SchedulerException.Kind kind) {
+        return counts.get(kind).sum();
+    }
+}
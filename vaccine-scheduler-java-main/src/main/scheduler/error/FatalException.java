@@ -0,0 +1,17 @@
+package scheduler.error;
+
+import java.sql.SQLException;
+
+// An unexpected failure; unlike the other errors it keeps its stack trace, since someone has to debug it
+public class FatalException extends SchedulerException {
+
+    private static final long serialVersionUID = 1L;
+
+    public FatalException(String message) {
+        super(Kind.FATAL, message, null);
+    }
+
+    public FatalException(SQLException cause) {
+        super(Kind.FATAL, cause.getMessage(), cause);
+    }
+}
@@ -0,0 +1,21 @@
+package scheduler.error;
+
+import java.sql.SQLException;
+
+public class InsufficientDosesException extends SchedulerException {
+
+    private static final long serialVersionUID = 1L;
+
+    public InsufficientDosesException(String message) {
+        super(Kind.INSUFFICIENT_DOSES, message, null);
+    }
+
+    public InsufficientDosesException(SQLException cause) {
+        super(Kind.INSUFFICIENT_DOSES, "Not enough available doses", cause);
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+}
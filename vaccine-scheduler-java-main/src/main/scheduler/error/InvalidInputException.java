@@ -0,0 +1,21 @@
+package scheduler.error;
+
+import java.sql.SQLException;
+
+public class InvalidInputException extends SchedulerException {
+
+    private static final long serialVersionUID = 1L;
+
+    public InvalidInputException(String message) {
+        super(Kind.INVALID_INPUT, message, null);
+    }
+
+    public InvalidInputException(SQLException cause) {
+        super(Kind.INVALID_INPUT, "The values break a check constraint", cause);
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+}
@@ -0,0 +1,21 @@
+package scheduler.error;
+
+import java.sql.SQLException;
+
+public class NotFoundException extends SchedulerException {
+
+    private static final long serialVersionUID = 1L;
+
+    public NotFoundException(String message) {
+        super(Kind.NOT_FOUND, message, null);
+    }
+
+    public NotFoundException(SQLException cause) {
+        super(Kind.NOT_FOUND, "The requested row does not exist", cause);
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+}
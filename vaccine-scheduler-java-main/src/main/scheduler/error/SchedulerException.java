@@ -0,0 +1,25 @@
+package scheduler.error;
+
+import java.sql.SQLException;
+
+// Base of the scheduler's typed errors. They extend SQLException so they flow through the existing
+// "throws SQLException" signatures. Except for FatalException they carry no stack trace: they are
+// expected outcomes, and capturing stacks for them is what makes error storms expensive.
+public abstract class SchedulerException extends SQLException {
+
+    private static final long serialVersionUID = 1L;
+
+    public enum Kind { DUPLICATE_KEY, NOT_FOUND, INSUFFICIENT_DOSES, INVALID_INPUT, TRANSIENT, FATAL }
+
+    private final Kind kind;
+
+    protected SchedulerException(Kind kind, String message, SQLException cause) {
+        super(message, cause == null ? null : cause.getSQLState(), cause == null ? 0 : cause.getErrorCode(), cause);
+        this.kind = kind;
+        ErrorCounters.increment(kind);
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+}
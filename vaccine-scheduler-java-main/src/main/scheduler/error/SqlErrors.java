@@ -0,0 +1,90 @@
+package scheduler.error;
+
+import java.sql.SQLException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class SqlErrors {
+
+    // SQL Server error numbers for unique key violations
+    private static final int[] DUPLICATE_KEY_ERRORS = {2627, 2601};
+    // constraint violations: foreign keys (a referenced row is missing) and check constraints
+    private static final int CONSTRAINT_ERROR = 547;
+    private static final String DOSES_CONSTRAINT = "CK_Vaccines_Doses";
+    // check constraints are named CK_..., foreign keys FK_... (or FK__... when the server names them)
+    private static final String CHECK_PREFIX = "CK_";
+    private static final Pattern CONSTRAINT_NAME =
+            Pattern.compile("constraint \"([^\"]+)\"", Pattern.CASE_INSENSITIVE);
+
+    // SQL Server error numbers that are safe to retry: deadlock victim, lock timeout and the
+    // Azure SQL failover / throttling / connection loss family
+    private static final int[] TRANSIENT_ERRORS = {
+            1205, 1222, 233, 64, 4060, 4221, 10053, 10054, 10060, 10928, 10929,
+            40143, 40197, 40501, 40540, 40613, 49918, 49919, 49920
+    };
+
+    // Map a driver exception to a typed error; errors that are already typed are returned unchanged
+    public static SchedulerException classify(SQLException e) {
+        if (e instanceof SchedulerException) {
+            return (SchedulerException) e;
+        }
+        if (isTransient(e)) {
+            return new TransientException(e);
+        }
+        if (contains(DUPLICATE_KEY_ERRORS, e.getErrorCode())) {
+            return new DuplicateKeyException(e);
+        }
+        if (e.getErrorCode() == CONSTRAINT_ERROR) {
+            String constraint = constraintName(e.getMessage());
+            if (DOSES_CONSTRAINT.equals(constraint)) {
+                return new InsufficientDosesException(e);
+            }
+            // a failed check means the values were invalid; only a foreign key means a row is missing
+            if (constraint != null && constraint.startsWith(CHECK_PREFIX)) {
+                return new InvalidInputException(e);
+            }
+            return new NotFoundException(e);
+        }
+        // class 23 is an integrity constraint violation for drivers that only report SQL states
+        String state = e.getSQLState();
+        if (state != null && state.startsWith("23")) {
+            return new DuplicateKeyException(e);
+        }
+        return new FatalException(e);
+    }
+
+    public static boolean isTransient(SQLException e) {
+        if (e instanceof SchedulerException) {
+            return ((SchedulerException) e).getKind() == SchedulerException.Kind.TRANSIENT;
+        }
+        for (SQLException cur = e; cur != null; cur = cur.getNextException()) {
+            String state = cur.getSQLState();
+            // class 08 is a connection exception, 40001 a serialization failure
+            if (state != null && (state.startsWith("08") || state.equals("40001"))) {
+                return true;
+            }
+            if (contains(TRANSIENT_ERRORS, cur.getErrorCode())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // The constraint named in a message like: The UPDATE statement conflicted with the CHECK constraint "CK_x".
+    private static String constraintName(String message) {
+        if (message == null) {
+            return null;
+        }
+        Matcher matcher = CONSTRAINT_NAME.matcher(message);
+        return matcher.find() ? matcher.group(1) : null;
+    }
+
+    private static boolean contains(int[] codes, int code) {
+        for (int c : codes) {
+            if (c == code) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,21 @@
+package scheduler.error;
+
+import java.sql.SQLException;
+
+public class TransientException extends SchedulerException {
+
+    private static final long serialVersionUID = 1L;
+
+    public TransientException(String message) {
+        super(Kind.TRANSIENT, message, null);
+    }
+
+    public TransientException(SQLException cause) {
+        super(Kind.TRANSIENT, "A temporary database failure occurred", cause);
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+}
@@ -0,0 +1,170 @@
+package scheduler.geo;
+
+import scheduler.db.ConnectionManager;
+import scheduler.error.SqlErrors;
+import scheduler.model.Site;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+
+// An in-memory grid over all sites for radius searches. The earth is cut into cells of CELL_DEGREES by
+// CELL_DEGREES; a search visits only the cells overlapping the circle's bounding box and measures the
+// great-circle distance to the sites in them.
+//
+// The grid is immutable and swapped as a whole: add_site in this process adds the new site at once, and the
+// whole index is reloaded from the Sites table every RELOAD_MILLIS to pick up other instances' sites.
+public class SiteIndex {
+
+    // constants for the grid and for refreshing it
+    private static final double CELL_DEGREES = 0.25;
+    private static final int LONGITUDE_CELLS = (int) Math.round(360 / CELL_DEGREES);
+    private static final double EARTH_RADIUS_KM = 6371.0088;
+    private static final double KM_PER_DEGREE = Math.PI * EARTH_RADIUS_KM / 180;
+    private static final long RELOAD_MILLIS = 5 * 60 * 1000;
+
+    private static volatile Grid grid = null;
+
+    // Sites within radiusKm of the point, nearest first
+    public static List<Nearby> within(double latitude, double longitude, double radiusKm) throws SQLException {
+        return current().within(latitude, longitude, radiusKm);
+    }
+
+    // The same search over the given sites instead of the Sites table
+    static List<Nearby> within(Collection<Site> sites, double latitude, double longitude, double radiusKm) {
+        return new Grid(sites, System.currentTimeMillis()).within(latitude, longitude, radiusKm);
+    }
+
+    public static synchronized void add(Site site) {
+        if (grid != null) {
+            List<Site> sites = new ArrayList<>(grid.sites);
+            sites.add(site);
+            grid = new Grid(sites, grid.loadedAt);
+        }
+    }
+
+    public static double distanceKm(double lat1, double lon1, double lat2, double lon2) {
+        // haversine formula
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2) +
+                Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) *
+                        Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    private static Grid current() throws SQLException {
+        Grid current = grid;
+        if (current == null || System.currentTimeMillis() - current.loadedAt > RELOAD_MILLIS) {
+            synchronized (SiteIndex.class) {
+                if (grid == current) {
+                    grid = new Grid(load(), System.currentTimeMillis());
+                }
+                current = grid;
+            }
+        }
+        return current;
+    }
+
+    private static List<Site> load() throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        Connection con = cm.createConnection();
+
+        try {
+            PreparedStatement getSites = con.prepareStatement("SELECT Site_ID, Name, Latitude, Longitude FROM Sites");
+            ResultSet rs = getSites.executeQuery();
+            List<Site> sites = new ArrayList<>();
+            while (rs.next()) {
+                sites.add(Site.fromRow(rs));
+            }
+            return sites;
+        } catch (SQLException e) {
+            throw SqlErrors.classify(e);
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    private static long cellKey(int row, int column) {
+        return ((long) row << 32) | (column & 0xFFFFFFFFL);
+    }
+
+    private static int row(double latitude) {
+        return (int) Math.floor(latitude / CELL_DEGREES);
+    }
+
+    private static int column(double longitude) {
+        return Math.floorMod((int) Math.floor(longitude / CELL_DEGREES), LONGITUDE_CELLS);
+    }
+
+    private static class Grid {
+        private final List<Site> sites;
+        private final long loadedAt;
+        private final HashMap<Long, List<Site>> cells = new HashMap<>();
+
+        private Grid(Collection<Site> sites, long loadedAt) {
+            this.sites = new ArrayList<>(sites);
+            this.loadedAt = loadedAt;
+            for (Site site : sites) {
+                long key = cellKey(row(site.getLatitude()), column(site.getLongitude()));
+                cells.computeIfAbsent(key, k -> new ArrayList<>()).add(site);
+            }
+        }
+
+        private List<Nearby> within(double latitude, double longitude, double radiusKm) {
+            double latSpan = radiusKm / KM_PER_DEGREE;
+            double minLat = Math.max(-90, latitude - latSpan);
+            double maxLat = Math.min(90, latitude + latSpan);
+            // a degree of longitude shrinks towards the poles, so the widest part of the box decides
+            double cos = Math.cos(Math.toRadians(Math.max(Math.abs(minLat), Math.abs(maxLat))));
+            double lonSpan = cos > 0 ? radiusKm / (KM_PER_DEGREE * cos) : 360;
+            int columns = lonSpan >= 180 ? LONGITUDE_CELLS :
+                    (int) Math.floor((longitude + lonSpan) / CELL_DEGREES) -
+                            (int) Math.floor((longitude - lonSpan) / CELL_DEGREES) + 1;
+            int firstColumn = lonSpan >= 180 ? 0 : column(longitude - lonSpan);
+
+            List<Nearby> result = new ArrayList<>();
+            for (int row = row(minLat); row <= row(maxLat); row++) {
+                for (int i = 0; i < Math.min(columns, LONGITUDE_CELLS); i++) {
+                    // columns wrap around at the antimeridian
+                    List<Site> cell = cells.get(cellKey(row, (firstColumn + i) % LONGITUDE_CELLS));
+                    if (cell == null) {
+                        continue;
+                    }
+                    for (Site site : cell) {
+                        double distance = distanceKm(latitude, longitude, site.getLatitude(), site.getLongitude());
+                        if (distance <= radiusKm) {
+                            result.add(new Nearby(site, distance));
+                        }
+                    }
+                }
+            }
+            result.sort(Comparator.comparingDouble(Nearby::getDistanceKm));
+            return result;
+        }
+    }
+
+    public static class Nearby {
+        private final Site site;
+        private final double distanceKm;
+
+        private Nearby(Site site, double distanceKm) {
+            this.site = site;
+            this.distanceKm = distanceKm;
+        }
+
+        public Site getSite() {
+            return site;
+        }
+
+        public double getDistanceKm() {
+            return distanceKm;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package scheduler.hold;
+
+import scheduler.util.TimingWheel;
+
+import java.sql.Date;
+
+public class Hold {
+    private final long id;
+    private final String patient;
+    private final Date date;
+    private final String vaccine;
+    private final String caregiver;
+    private final long expiresAt;
+    TimingWheel.Timeout timeout;
+
+    Hold(long id, String patient, Date date, String vaccine, String caregiver, long expiresAt) {
+        this.id = id;
+        this.patient = patient;
+        this.date = date;
+        this.vaccine = vaccine;
+        this.caregiver = caregiver;
+        this.expiresAt = expiresAt;
+    }
+
+    // Getters
+    public long getId() {
+        return id;
+    }
+
+    public String getPatient() {
+        return patient;
+    }
+
+    public Date getDate() {
+        return date;
+    }
+
+    public String getVaccine() {
+        return vaccine;
+    }
+
+    public String getCaregiver() {
+        return caregiver;
+    }
+
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+}
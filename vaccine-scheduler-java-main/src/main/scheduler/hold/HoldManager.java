@@ -0,0 +1,116 @@
+package scheduler.hold;
+
+import scheduler.error.InsufficientDosesException;
+import scheduler.util.TimingWheel;
+
+import java.sql.Date;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Short-lived holds on a caregiver slot and one dose, for booking in two steps: hold, then confirm.
+// Holds live only in memory and take no database locks; reservations made by this process skip held slots
+// and leave held doses alone, and a hold that is neither confirmed nor released expires after HoldSeconds.
+public class HoldManager {
+
+    // constants for how long holds last and how precisely they expire
+    private static final long DEFAULT_HOLD_SECONDS = 300;
+    // well within the range of the timing wheel, which is about 19 days at this tick
+    private static final long MAX_HOLD_SECONDS = 24 * 60 * 60;
+    private static final long TICK_MILLIS = 100;
+
+    private static final long HOLD_MILLIS = loadHoldSeconds() * 1000;
+    private static final TimingWheel wheel = new TimingWheel(TICK_MILLIS);
+    private static final AtomicLong nextId = new AtomicLong(1);
+    private static final ConcurrentHashMap<Long, Hold> holds = new ConcurrentHashMap<>();
+    // "<date> <caregiver>" -> id of the hold on that slot
+    private static final ConcurrentHashMap<String, Long> heldSlots = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, AtomicInteger> heldDoses = new ConcurrentHashMap<>();
+
+    static {
+        wheel.start("hold-expiry");
+    }
+
+    // Hold the caregiver's slot and one dose for the patient; availableDoses is the vaccine's stock in the
+    // database. Returns null if a concurrent hold took the slot first.
+    public static Hold hold(String patient, Date d, String vaccine, String caregiver, int availableDoses)
+            throws InsufficientDosesException {
+        long id = nextId.getAndIncrement();
+        String slot = slotKey(d, caregiver);
+        if (heldSlots.putIfAbsent(slot, id) != null) {
+            return null;
+        }
+        AtomicInteger doses = heldDoses.computeIfAbsent(vaccine, k -> new AtomicInteger());
+        if (doses.incrementAndGet() > availableDoses) {
+            doses.decrementAndGet();
+            heldSlots.remove(slot, id);
+            throw new InsufficientDosesException("Not enough available doses");
+        }
+        Hold hold = new Hold(id, patient, d, vaccine, caregiver, System.currentTimeMillis() + HOLD_MILLIS);
+        // schedule the expiry before the hold can be taken, so a hold without one is never published
+        try {
+            hold.timeout = wheel.schedule(() -> expire(hold), HOLD_MILLIS);
+        } catch (RuntimeException e) {
+            release(hold);
+            throw e;
+        }
+        holds.put(id, hold);
+        return hold;
+    }
+
+    // Take the patient's hold out of the manager so that it can no longer expire; the caller books it and
+    // then calls release. Returns null if there is no such hold, it is someone else's, or it has expired.
+    public static Hold take(long id, String patient) {
+        Hold hold = holds.get(id);
+        if (hold == null || !hold.getPatient().equals(patient) || !holds.remove(id, hold)) {
+            return null;
+        }
+        hold.timeout.cancel();
+        return hold;
+    }
+
+    // Give the slot and the dose of a taken hold back
+    public static void release(Hold hold) {
+        heldSlots.remove(slotKey(hold.getDate(), hold.getCaregiver()), hold.getId());
+        heldDoses.get(hold.getVaccine()).decrementAndGet();
+    }
+
+    public static boolean isHeld(Date d, String caregiver) {
+        return heldSlots.containsKey(slotKey(d, caregiver));
+    }
+
+    // Doses of the vaccine held by this process and not yet confirmed
+    public static int heldDoses(String vaccine) {
+        AtomicInteger doses = heldDoses.get(vaccine);
+        return doses == null ? 0 : doses.get();
+    }
+
+    private static void expire(Hold hold) {
+        // a hold being confirmed has already been taken out, so it cannot expire halfway
+        if (holds.remove(hold.getId(), hold)) {
+            release(hold);
+        }
+    }
+
+    private static String slotKey(Date d, String caregiver) {
+        return d + " " + caregiver;
+    }
+
+    // HoldSeconds must be positive, and is capped at MAX_HOLD_SECONDS
+    private static long loadHoldSeconds() {
+        String value = System.getenv("HoldSeconds");
+        if (value == null) {
+            return DEFAULT_HOLD_SECONDS;
+        }
+        long seconds;
+        try {
+            seconds = Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return DEFAULT_HOLD_SECONDS;
+        }
+        if (seconds <= 0) {
+            return DEFAULT_HOLD_SECONDS;
+        }
+        return Math.min(seconds, MAX_HOLD_SECONDS);
+    }
+}
@@ -0,0 +1,50 @@
+package scheduler.lifecycle;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.function.BooleanSupplier;
+
+// Serves the liveness and readiness probes over HTTP on HealthPort, for an orchestrator to poll:
+// GET /health/live and GET /health/ready answer 200 or 503. Without HealthPort nothing is started.
+public class HealthServer {
+
+    private static HttpServer server = null;
+
+    static synchronized void start() {
+        String port = System.getenv("HealthPort");
+        if (server != null || port == null) {
+            return;
+        }
+        try {
+            server = HttpServer.create(new InetSocketAddress(Integer.parseInt(port)), 0);
+        } catch (IOException | NumberFormatException e) {
+            System.err.println("Health endpoint not started: " + e.getMessage());
+            return;
+        }
+        server.createContext("/health/live", exchange -> respond(exchange, Lifecycle::live));
+        server.createContext("/health/ready", exchange -> respond(exchange, Lifecycle::ready));
+        // the default executor runs the handlers on the server's own thread, one probe at a time
+        server.start();
+    }
+
+    static synchronized void stop() {
+        if (server != null) {
+            server.stop(0);
+            server = null;
+        }
+    }
+
+    private static void respond(HttpExchange exchange, BooleanSupplier probe) throws IOException {
+        boolean ok = probe.getAsBoolean();
+        byte[] body = (ok ? "OK\n" : "UNAVAILABLE " + Lifecycle.state() + "\n").getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(ok ? 200 : 503, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package scheduler.lifecycle;
+
+import scheduler.audit.AuditLog;
+import scheduler.db.ArchivalJob;
+import scheduler.db.ConnectionManager;
+import scheduler.db.ConnectionPool;
+import scheduler.db.HealthCheck;
+import scheduler.db.MigrationRunner;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+// Starts and stops the scheduler as a long-running service.
+// - start: migrates the schema, warms up the connection pool, starts the background jobs and the health
+//   endpoint, and registers a shutdown hook (the JVM runs it on SIGTERM as well as on a normal exit).
+// - shutdown: stops accepting commands, waits up to DrainSeconds for the ones in flight, then stops the
+//   background jobs, flushes the audit log and closes the pool.
+public class Lifecycle {
+
+    public enum State { STARTING, RUNNING, DRAINING, STOPPED }
+
+    // constants for warming up and draining
+    private static final int WARMUP_CONNECTIONS = 2;
+    private static final int DEFAULT_DRAIN_SECONDS = 30;
+    // the service stays live while the database is down for less than this, since restarting would not help
+    private static final long LIVENESS_GRACE_MILLIS = 5 * 60 * 1000;
+
+    // the statements behind the most frequent commands, run once per warmed connection so their plans are
+    // cached on the server and their code paths are loaded here
+    private static final String[] WARMUP_QUERIES = {
+            "SELECT Username FROM Availabilities WHERE Time = ? ORDER BY Username",
+            "SELECT Appointment_ID, Caregiver_Username FROM Appointments WHERE Appointment_time = ?",
+    };
+
+    private static final Object lock = new Object();
+    private static volatile State state = State.STARTING;
+    private static int inFlight = 0;
+
+    public static void start() throws SQLException {
+        MigrationRunner.migrate();
+        warmUp();
+        ArchivalJob.start();
+        HealthServer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(Lifecycle::shutdown, "lifecycle-shutdown"));
+        state = State.RUNNING;
+    }
+
+    // Call before running a command; returns false if the service is shutting down and the command must not run
+    public static boolean enter() {
+        synchronized (lock) {
+            if (state == State.DRAINING || state == State.STOPPED) {
+                return false;
+            }
+            inFlight++;
+            return true;
+        }
+    }
+
+    // Call after a command that was admitted by enter has finished
+    public static void exit() {
+        synchronized (lock) {
+            inFlight--;
+            if (inFlight == 0) {
+                lock.notifyAll();
+            }
+        }
+    }
+
+    public static void shutdown() {
+        synchronized (lock) {
+            if (state == State.DRAINING || state == State.STOPPED) {
+                return;
+            }
+            state = State.DRAINING;
+            long deadline = System.currentTimeMillis() + loadDrainSeconds() * 1000L;
+            try {
+                while (inFlight > 0 && System.currentTimeMillis() < deadline) {
+                    lock.wait(deadline - System.currentTimeMillis());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (inFlight > 0) {
+                System.err.println("Shutting down with " + inFlight + " commands still running");
+            }
+        }
+        ArchivalJob.stop();
+        HealthServer.stop();
+        // the audit writer may still need a connection for its last batches
+        AuditLog.close();
+        ConnectionPool.close();
+        if (ConnectionPool.leakedConnections() > 0) {
+            System.err.println("Leaked connections: " + ConnectionPool.leakedConnections());
+        }
+        state = State.STOPPED;
+    }
+
+    public static State state() {
+        return state;
+    }
+
+    // Live unless stopped or cut off from the database for so long that a restart is the better bet
+    public static boolean live() {
+        return state != State.STOPPED && HealthCheck.unreachableForMillis() < LIVENESS_GRACE_MILLIS;
+    }
+
+    // Ready to take commands: started, not draining, and the database answers
+    public static boolean ready() {
+        return state == State.RUNNING && HealthCheck.databaseReachable();
+    }
+
+    private static void warmUp() throws SQLException {
+        // hold all of them at once, so the pool really opens that many connections
+        List<ConnectionManager> managers = new ArrayList<>();
+        try {
+            for (int i = 0; i < Math.min(WARMUP_CONNECTIONS, ConnectionPool.size()); i++) {
+                ConnectionManager cm = new ConnectionManager();
+                managers.add(cm);
+                Connection con = cm.createConnection();
+                // a date in the distant past matches nothing but still compiles the plan
+                Date d = Date.valueOf("1900-01-01");
+                for (String query : WARMUP_QUERIES) {
+                    PreparedStatement statement = con.prepareStatement(query);
+                    statement.setDate(1, d);
+                    statement.executeQuery().close();
+                    statement.close();
+                }
+            }
+        } finally {
+            for (ConnectionManager cm : managers) {
+                cm.closeConnection();
+            }
+        }
+    }
+
+    private static int loadDrainSeconds() {
+        String drain = System.getenv("DrainSeconds");
+        if (drain == null) {
+            return DEFAULT_DRAIN_SECONDS;
+        }
+        try {
+            return Integer.parseInt(drain);
+        } catch (NumberFormatException e) {
+            return DEFAULT_DRAIN_SECONDS;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package scheduler.loadtest;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// A lock-free log-linear histogram of latencies in microseconds. Values below 64 get their own bucket,
+// larger values share a bucket with values within about 3% of them, so memory stays constant
+// no matter how many samples are recorded.
+public class LatencyHistogram {
+    private static final int SUB_BITS = 6;
+    private static final int LINEAR = 1 << SUB_BITS;
+    private static final int HALF = LINEAR / 2;
+    private static final int BUCKETS = LINEAR + (63 - SUB_BITS) * HALF;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    public void record(long micros) {
+        counts.incrementAndGet(indexOf(Math.max(0, micros)));
+    }
+
+    public long count() {
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            total += counts.get(i);
+        }
+        return total;
+    }
+
+    // Returns the upper bound of the bucket holding the given percentile (0 < p <= 100), in microseconds
+    public long percentile(double p) {
+        long total = count();
+        if (total == 0) {
+            return 0;
+        }
+        long target = (long) Math.ceil(p / 100 * total);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= target) {
+                return upperBound(i);
+            }
+        }
+        return upperBound(BUCKETS - 1);
+    }
+
+    private static int indexOf(long value) {
+        if (value < LINEAR) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BITS + 1;
+        int mantissa = (int) (value >>> shift);
+        return LINEAR + (exponent - SUB_BITS) * HALF + (mantissa - HALF);
+    }
+
+    private static long upperBound(int index) {
+        if (index < LINEAR) {
+            return index;
+        }
+        int exponent = (index - LINEAR) / HALF + SUB_BITS;
+        int mantissa = (index - LINEAR) % HALF + HALF;
+        int shift = exponent - SUB_BITS + 1;
+        return ((long) (mantissa + 1) << shift) - 1;
+    }
+}
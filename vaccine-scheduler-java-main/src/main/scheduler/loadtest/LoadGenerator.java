@@ -0,0 +1,456 @@
+package scheduler.loadtest;
+
+import scheduler.Scheduler;
+import scheduler.Session;
+import scheduler.db.ConnectionManager;
+import scheduler.db.MigrationRunner;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+// Replays a configurable mix of scheduler commands from many concurrent virtual users and reports
+// throughput, latency percentiles, error rates and invariant violations.
+// Usage: LoadGenerator [key=value ...], for example
+//   LoadGenerator patients=200 caregivers=20 mix=search:70,reserve:20,login:10 mode=open rate=500 duration=60
+// Options:
+//   patients, caregivers  number of virtual users of each role (default 50 and 10)
+//   mix                   weights of search, reserve, login, show, upload and add_doses (default as above)
+//   mode                  closed: every user issues its next command when the last one is done (default)
+//                         open: commands arrive at a fixed Poisson rate, independent of response times
+//   rate                  arrivals per second in open mode (default 100)
+//   think                 pause in milliseconds between commands of a user in closed mode (default 0)
+//   duration              length of the run in seconds (default 30)
+//   start, days           range of appointment dates used by the run (default 2030-01-01 and 30)
+//   vaccine, doses        vaccine the run reserves and its initial number of doses (default LoadTest, 100000)
+//   schema                SQL script to run before seeding, e.g. src/main/resources/create.sql when
+//                         ConnectionUrl points at a fresh local or embedded database
+public class LoadGenerator {
+
+    private static final String PASSWORD = "LoadTest#1";
+    private static final String BUSY = "Server busy";
+    // seed commands shed by admission control are retried, waiting twice as long each time
+    private static final int SEED_MAX_ATTEMPTS = 20;
+    private static final long SEED_MIN_BACKOFF_MILLIS = 100;
+    private static final long SEED_MAX_BACKOFF_MILLIS = 5000;
+
+    private enum Role { PATIENT, CAREGIVER }
+
+    private enum Operation {
+        SEARCH(Role.PATIENT), RESERVE(Role.PATIENT), LOGIN(Role.PATIENT), SHOW(Role.PATIENT),
+        UPLOAD(Role.CAREGIVER), ADD_DOSES(Role.CAREGIVER);
+
+        private final Role role;
+
+        Operation(Role role) {
+            this.role = role;
+        }
+    }
+
+    private enum Outcome { OK, REJECTED, ERROR }
+
+    private final Map<String, String> options;
+    private final int patients;
+    private final int caregivers;
+    private final LocalDate start;
+    private final int days;
+    private final String vaccine;
+
+    private final Operation[] operations;
+    private final double[] cumulativeWeights;
+
+    private final Map<Role, LinkedBlockingQueue<VirtualUser>> idle = new EnumMap<>(Role.class);
+    private final Map<Operation, Stats> stats = new EnumMap<>(Operation.class);
+
+    public LoadGenerator(Map<String, String> options) {
+        this.options = options;
+        this.patients = Integer.parseInt(options.getOrDefault("patients", "50"));
+        this.caregivers = Integer.parseInt(options.getOrDefault("caregivers", "10"));
+        this.start = LocalDate.parse(options.getOrDefault("start", "2030-01-01"));
+        this.days = Integer.parseInt(options.getOrDefault("days", "30"));
+        this.vaccine = options.getOrDefault("vaccine", "LoadTest");
+
+        String[] entries = options.getOrDefault("mix", "search:70,reserve:20,login:10").split(",");
+        operations = new Operation[entries.length];
+        cumulativeWeights = new double[entries.length];
+        double total = 0;
+        for (int i = 0; i < entries.length; i++) {
+            String[] parts = entries[i].split(":");
+            operations[i] = Operation.valueOf(parts[0].toUpperCase());
+            total += Double.parseDouble(parts[1]);
+            cumulativeWeights[i] = total;
+        }
+        for (Operation operation : operations) {
+            if ((operation.role == Role.PATIENT ? patients : caregivers) == 0) {
+                throw new IllegalArgumentException("The mix contains " + operation.name().toLowerCase() +
+                        " but there are no users to run it");
+            }
+        }
+        for (Role role : Role.values()) {
+            idle.put(role, new LinkedBlockingQueue<>());
+        }
+        for (Operation operation : Operation.values()) {
+            stats.put(operation, new Stats());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            String[] parts = arg.split("=", 2);
+            if (parts.length != 2) {
+                System.out.println("Arguments must look like key=value: " + arg);
+                return;
+            }
+            options.put(parts[0], parts[1]);
+        }
+        new LoadGenerator(options).run();
+    }
+
+    public void run() throws Exception {
+        if (options.containsKey("schema")) {
+            runScript(options.get("schema"));
+        }
+        MigrationRunner.migrate();
+        seed();
+        Snapshot before = snapshot();
+
+        long durationNanos = TimeUnit.SECONDS.toNanos(Long.parseLong(options.getOrDefault("duration", "30")));
+        int workers = patients + caregivers;
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        long begin = System.nanoTime();
+        if (options.getOrDefault("mode", "closed").equals("open")) {
+            runOpenLoop(pool, begin, durationNanos);
+        } else {
+            runClosedLoop(pool, workers, begin, durationNanos);
+        }
+        pool.shutdown();
+        pool.awaitTermination(1, TimeUnit.MINUTES);
+        long elapsed = System.nanoTime() - begin;
+
+        report(elapsed);
+        checkInvariants(before, snapshot());
+        for (LinkedBlockingQueue<VirtualUser> users : idle.values()) {
+            for (VirtualUser user : users) {
+                user.session.close();
+            }
+        }
+    }
+
+    // Arrivals follow a Poisson process; latency is measured from the intended arrival time, so time spent
+    // queueing for a free user counts against the system instead of being silently omitted
+    private void runOpenLoop(ExecutorService pool, long begin, long durationNanos) {
+        double rate = Double.parseDouble(options.getOrDefault("rate", "100"));
+        long next = begin;
+        while (next - begin < durationNanos) {
+            next += (long) (-Math.log(1 - ThreadLocalRandom.current().nextDouble()) / rate * 1e9);
+            long wait = next - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            long intended = next;
+            Operation operation = pickOperation();
+            pool.execute(() -> perform(operation, intended));
+        }
+    }
+
+    private void runClosedLoop(ExecutorService pool, int workers, long begin, long durationNanos) {
+        long think = Long.parseLong(options.getOrDefault("think", "0"));
+        for (int i = 0; i < workers; i++) {
+            pool.execute(() -> {
+                while (System.nanoTime() - begin < durationNanos) {
+                    perform(pickOperation(), System.nanoTime());
+                    if (think > 0) {
+                        LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(think));
+                    }
+                }
+            });
+        }
+    }
+
+    private void perform(Operation operation, long intended) {
+        VirtualUser user;
+        try {
+            user = idle.get(operation.role).take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        try {
+            Outcome outcome = user.perform(operation);
+            stats.get(operation).record(outcome, (System.nanoTime() - intended) / 1000);
+        } finally {
+            idle.get(operation.role).add(user);
+        }
+    }
+
+    private Operation pickOperation() {
+        double r = ThreadLocalRandom.current().nextDouble() * cumulativeWeights[cumulativeWeights.length - 1];
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (r < cumulativeWeights[i]) {
+                return operations[i];
+            }
+        }
+        return operations[operations.length - 1];
+    }
+
+    private LocalDate randomDate() {
+        return start.plusDays(ThreadLocalRandom.current().nextInt(days));
+    }
+
+    // A run on top of partial seed data would measure the missing data, so every seed command must succeed
+    // (or find its data from an earlier run in place); otherwise the run stops here
+    private void seed() throws SQLException {
+        System.out.println("Seeding " + patients + " patients and " + caregivers + " caregivers...");
+        for (int i = 0; i < caregivers; i++) {
+            VirtualUser user = new VirtualUser(Role.CAREGIVER, "loadtest_caregiver_" + i);
+            user.seed(new String[]{"Created user", "Username taken"}, "create_caregiver", user.username, PASSWORD);
+            user.execute("logout");
+            user.seed(new String[]{"Logged in as:"}, "login_caregiver", user.username, PASSWORD);
+            for (int d = 0; d < days; d++) {
+                user.seed(new String[]{"Availability uploaded!", "Availability already uploaded"},
+                        "upload_availability", start.plusDays(d).toString());
+            }
+            if (i == 0) {
+                user.seed(new String[]{"Doses updated!"}, "add_doses", vaccine,
+                        options.getOrDefault("doses", "100000"));
+            }
+            idle.get(Role.CAREGIVER).add(user);
+        }
+        for (int i = 0; i < patients; i++) {
+            VirtualUser user = new VirtualUser(Role.PATIENT, "loadtest_patient_" + i);
+            user.seed(new String[]{"Created user", "Username taken"}, "create_patient", user.username, PASSWORD);
+            user.execute("logout");
+            user.seed(new String[]{"Logged in as:"}, "login_patient", user.username, PASSWORD);
+            idle.get(Role.PATIENT).add(user);
+        }
+    }
+
+    private void runScript(String path) throws IOException, SQLException {
+        String script = new String(Files.readAllBytes(Paths.get(path)), StandardCharsets.UTF_8);
+        ConnectionManager cm = new ConnectionManager();
+        Connection con = cm.createConnection();
+
+        try {
+            Statement statement = con.createStatement();
+            for (String sql : script.split(";")) {
+                if (!sql.isBlank()) {
+                    statement.execute(sql);
+                }
+            }
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    private Snapshot snapshot() throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        Connection con = cm.createConnection();
+
+        try {
+            Snapshot snapshot = new Snapshot();
+            PreparedStatement getDoses = con.prepareStatement("SELECT Doses FROM Vaccines WHERE Name = ?");
+            getDoses.setString(1, vaccine);
+            ResultSet rs1 = getDoses.executeQuery();
+            snapshot.doses = rs1.next() ? rs1.getLong(1) : 0;
+
+            PreparedStatement getAppointments =
+                    con.prepareStatement("SELECT COUNT(*) FROM Appointments WHERE Vaccine_name = ?");
+            getAppointments.setString(1, vaccine);
+            ResultSet rs2 = getAppointments.executeQuery();
+            rs2.next();
+            snapshot.appointments = rs2.getLong(1);
+
+            ResultSet rs3 = con.prepareStatement("SELECT COUNT(*) FROM Vaccines WHERE Doses < 0").executeQuery();
+            rs3.next();
+            snapshot.negativeDoses = rs3.getLong(1);
+
+            // an appointment with a caregiver who was never available that day is a double booking
+            ResultSet rs4 = con.prepareStatement("SELECT COUNT(*) FROM Appointments a WHERE NOT EXISTS " +
+                    "(SELECT 1 FROM Availabilities v WHERE v.Time = a.Appointment_time " +
+                    "AND v.Username = a.Caregiver_Username)").executeQuery();
+            rs4.next();
+            snapshot.unavailableCaregivers = rs4.getLong(1);
+            return snapshot;
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    private void report(long elapsedNanos) {
+        double seconds = elapsedNanos / 1e9;
+        long total = 0;
+        System.out.println();
+        System.out.printf("%-10s %9s %9s %9s %9s %8s %10s %10s %10s %10s%n", "operation", "count", "ok",
+                "rejected", "errors", "error%", "ops/s", "p50 ms", "p99 ms", "p99.9 ms");
+        for (Operation operation : Operation.values()) {
+            Stats s = stats.get(operation);
+            long count = s.latencies.count();
+            if (count == 0) {
+                continue;
+            }
+            total += count;
+            System.out.printf("%-10s %9d %9d %9d %9d %7.2f%% %10.1f %10.2f %10.2f %10.2f%n",
+                    operation.name().toLowerCase(), count, s.ok.sum(), s.rejected.sum(), s.errors.sum(),
+                    100.0 * s.errors.sum() / count, count / seconds, s.latencies.percentile(50) / 1000.0,
+                    s.latencies.percentile(99) / 1000.0, s.latencies.percentile(99.9) / 1000.0);
+        }
+        System.out.printf("Total: %d commands in %.1f s, %.1f commands/s%n", total, seconds, total / seconds);
+    }
+
+    private void checkInvariants(Snapshot before, Snapshot after) {
+        long reserved = stats.get(Operation.RESERVE).ok.sum();
+        long added = stats.get(Operation.ADD_DOSES).ok.sum();
+        int violations = 0;
+        if (after.negativeDoses > 0) {
+            System.out.println("VIOLATION: " + after.negativeDoses + " vaccines have negative doses (oversell)");
+            violations++;
+        }
+        if (before.doses + added - reserved != after.doses) {
+            System.out.println("VIOLATION: expected " + (before.doses + added - reserved) + " doses of " + vaccine +
+                    " but found " + after.doses);
+            violations++;
+        }
+        if (after.appointments - before.appointments != reserved) {
+            System.out.println("VIOLATION: " + reserved + " reservations succeeded but " +
+                    (after.appointments - before.appointments) + " appointments were stored");
+            violations++;
+        }
+        if (after.unavailableCaregivers > before.unavailableCaregivers) {
+            System.out.println("VIOLATION: " + (after.unavailableCaregivers - before.unavailableCaregivers) +
+                    " appointments were booked with a caregiver who is not available that day");
+            violations++;
+        }
+        System.out.println(violations == 0 ? "All invariants hold." : violations + " invariant violations.");
+    }
+
+    private class VirtualUser {
+        private final Role role;
+        private final String username;
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        private final Session session = new Session(new PrintStream(buffer, true, StandardCharsets.UTF_8));
+
+        private VirtualUser(Role role, String username) {
+            this.role = role;
+            this.username = username;
+        }
+
+        private String execute(String... tokens) throws SQLException {
+            buffer.reset();
+            Scheduler.execute(session, tokens);
+            return buffer.toString(StandardCharsets.UTF_8);
+        }
+
+        // Run a seed command, retrying with backoff while admission control sheds it, and fail unless the
+        // output contains one of the expected results
+        private void seed(String[] expected, String... tokens) throws SQLException {
+            long backoff = SEED_MIN_BACKOFF_MILLIS;
+            String output = execute(tokens);
+            for (int attempt = 1; output.contains(BUSY) && attempt < SEED_MAX_ATTEMPTS; attempt++) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(backoff));
+                backoff = Math.min(SEED_MAX_BACKOFF_MILLIS, backoff * 2);
+                output = execute(tokens);
+            }
+            for (String result : expected) {
+                if (output.contains(result)) {
+                    return;
+                }
+            }
+            throw new IllegalStateException("Seeding failed: " + String.join(" ", tokens) + " as " + username +
+                    " printed " + output.trim());
+        }
+
+        private Outcome perform(Operation operation) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            String output;
+            try {
+                switch (operation) {
+                    case SEARCH:
+                        output = execute("search_caregiver_schedule", randomDate().toString());
+                        break;
+                    case RESERVE:
+                        output = execute("reserve", randomDate().toString(), vaccine);
+                        if (output.contains("Appointment ID:")) {
+                            return Outcome.OK;
+                        }
+                        if (output.contains("Not enough available doses!") ||
+                                output.contains("No Caregiver is available!") || output.contains(BUSY)) {
+                            return Outcome.REJECTED;
+                        }
+                        return Outcome.ERROR;
+                    case LOGIN:
+                        execute("logout");
+                        output = execute(role == Role.PATIENT ? "login_patient" : "login_caregiver",
+                                username, PASSWORD);
+                        if (output.contains(BUSY)) {
+                            return Outcome.REJECTED;
+                        }
+                        return output.contains("Logged in as:") ? Outcome.OK : Outcome.ERROR;
+                    case SHOW:
+                        output = execute("show_appointments");
+                        break;
+                    case UPLOAD:
+                        // far beyond the reserved range, so uploads rarely collide with existing availability
+                        output = execute("upload_availability",
+                                start.plusDays(days + random.nextInt(100000)).toString());
+                        break;
+                    default:
+                        output = execute("add_doses", vaccine, "1");
+                        break;
+                }
+            } catch (SQLException | RuntimeException e) {
+                return Outcome.ERROR;
+            }
+            // shed by admission control
+            if (output.contains(BUSY)) {
+                return Outcome.REJECTED;
+            }
+            return output.contains("Please try again!") || output.contains("Error occurred") ||
+                    output.contains("Please login") ? Outcome.ERROR : Outcome.OK;
+        }
+    }
+
+    private static class Stats {
+        private final LongAdder ok = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LatencyHistogram latencies = new LatencyHistogram();
+
+        private void record(Outcome outcome, long micros) {
+            latencies.record(micros);
+            if (outcome == Outcome.OK) {
+                ok.increment();
+            } else if (outcome == Outcome.REJECTED) {
+                rejected.increment();
+            } else {
+                errors.increment();
+            }
+        }
+    }
+
+    private static class Snapshot {
+        private long doses;
+        private long appointments;
+        private long negativeDoses;
+        private long unavailableCaregivers;
+    }
+}
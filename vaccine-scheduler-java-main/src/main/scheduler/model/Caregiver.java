@@ -1,6 +1,8 @@
 package scheduler.model;
 
+import scheduler.audit.AuditLog;
 import scheduler.db.ConnectionManager;
+import scheduler.error.SqlErrors;
 import scheduler.util.Util;
 
 import java.sql.*;
@@ -48,27 +50,45 @@ public class Caregiver {
             statement.setBytes(3, this.hash);
             statement.executeUpdate();
         } catch (SQLException e) {
-            throw new SQLException();
+            throw SqlErrors.classify(e);
         } finally {
             cm.closeConnection();
         }
+        // recorded once the connection is back, since a durable audit write waits for the audit writer
+        AuditLog.record(this.username, "create_caregiver", null);
     }
 
     public void uploadAvailability(Date d) throws SQLException {
+        uploadAvailability(d, null);
+    }
+
+    // Upload availability for the day at the given site, or at no particular site if it is null
+    public void uploadAvailability(Date d, Site site) throws SQLException {
+        if (d == null) {
+            throw new IllegalArgumentException("Date cannot be null!");
+        }
+
         ConnectionManager cm = new ConnectionManager();
         Connection con = cm.createConnection();
 
-        String addAvailability = "INSERT INTO Availabilities VALUES (? , ?)";
+        String addAvailability = "INSERT INTO Availabilities (Time, Username, Site_ID) VALUES (? , ?, ?)";
         try {
             PreparedStatement statement = con.prepareStatement(addAvailability);
             statement.setDate(1, d);
             statement.setString(2, this.username);
+            if (site == null) {
+                statement.setNull(3, Types.INTEGER);
+            } else {
+                statement.setInt(3, site.getSiteId());
+            }
             statement.executeUpdate();
         } catch (SQLException e) {
-            throw new SQLException();
+            throw SqlErrors.classify(e);
         } finally {
             cm.closeConnection();
         }
+        AuditLog.record(this.username, "upload_availability",
+                "date=" + d + (site == null ? "" : ", site=" + site.getName()));
     }
 
     public static class CaregiverBuilder {
@@ -77,6 +97,9 @@ public class Caregiver {
         private final byte[] hash;
 
         public CaregiverBuilder(String username, byte[] salt, byte[] hash) {
+            if (!Util.validName(username)) {
+                throw new IllegalArgumentException("Invalid username!");
+            }
             this.username = username;
             this.salt = salt;
             this.hash = hash;
@@ -99,6 +122,11 @@ public class Caregiver {
         }
 
         public Caregiver get() throws SQLException {
+            // a name that could never have been stored cannot match, so skip the lookup
+            if (!Util.validName(username) || password == null) {
+                return null;
+            }
+
             ConnectionManager cm = new ConnectionManager();
             Connection con = cm.createConnection();
 
@@ -124,7 +152,7 @@ public class Caregiver {
                 }
                 return null;
             } catch (SQLException e) {
-                throw new SQLException();
+                throw SqlErrors.classify(e);
             } finally {
                 cm.closeConnection();
             }
@@ -1,6 +1,8 @@
 package scheduler.model;
 
+import scheduler.audit.AuditLog;
 import scheduler.db.ConnectionManager;
+import scheduler.error.SqlErrors;
 import scheduler.util.Util;
 
 import java.sql.*;
@@ -48,27 +50,34 @@ public class Patient {
             statement.setBytes(3, this.hash);
             statement.executeUpdate();
         } catch (SQLException e) {
-            throw new SQLException();
+            throw SqlErrors.classify(e);
         } finally {
             cm.closeConnection();
         }
+        // recorded once the connection is back, since a durable audit write waits for the audit writer
+        AuditLog.record(this.username, "create_patient", null);
     }
 
     public void uploadAvailability(Date d) throws SQLException {
+        if (d == null) {
+            throw new IllegalArgumentException("Date cannot be null!");
+        }
+
         ConnectionManager cm = new ConnectionManager();
         Connection con = cm.createConnection();
 
-        String addAvailability = "INSERT INTO Availabilities VALUES (? , ?)";
+        String addAvailability = "INSERT INTO Availabilities (Time, Username) VALUES (? , ?)";
         try {
             PreparedStatement statement = con.prepareStatement(addAvailability);
             statement.setDate(1, d);
             statement.setString(2, this.username);
             statement.executeUpdate();
         } catch (SQLException e) {
-            throw new SQLException();
+            throw SqlErrors.classify(e);
         } finally {
             cm.closeConnection();
         }
+        AuditLog.record(this.username, "upload_availability", "date=" + d);
     }
 
     public static class PatientBuilder {
@@ -77,6 +86,9 @@ public class Patient {
         private final byte[] hash;
 
         public PatientBuilder(String username, byte[] salt, byte[] hash) {
+            if (!Util.validName(username)) {
+                throw new IllegalArgumentException("Invalid username!");
+            }
             this.username = username;
             this.salt = salt;
             this.hash = hash;
@@ -99,6 +111,11 @@ public class Patient {
         }
 
         public Patient get() throws SQLException {
+            // a name that could never have been stored cannot match, so skip the lookup
+            if (!Util.validName(username) || password == null) {
+                return null;
+            }
+
             ConnectionManager cm = new ConnectionManager();
             Connection con = cm.createConnection();
 
@@ -124,7 +141,7 @@ public class Patient {
                 }
                 return null;
             } catch (SQLException e) {
-                throw new SQLException();
+                throw SqlErrors.classify(e);
             } finally {
                 cm.closeConnection();
             }
@@ -0,0 +1,128 @@
+package scheduler.model;
+
+import scheduler.db.ConnectionManager;
+import scheduler.error.SqlErrors;
+import scheduler.util.Util;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+public class Site {
+    private int siteId;
+    private final String name;
+    private final double latitude;
+    private final double longitude;
+
+    private Site(SiteBuilder builder) {
+        this.siteId = 0;
+        this.name = builder.name;
+        this.latitude = builder.latitude;
+        this.longitude = builder.longitude;
+    }
+
+    private Site(int siteId, String name, double latitude, double longitude) {
+        this.siteId = siteId;
+        this.name = name;
+        this.latitude = latitude;
+        this.longitude = longitude;
+    }
+
+    // Getters
+    public int getSiteId() {
+        return siteId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public double getLatitude() {
+        return latitude;
+    }
+
+    public double getLongitude() {
+        return longitude;
+    }
+
+    public void saveToDB() throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        Connection con = cm.createConnection();
+
+        String addSite = "INSERT INTO Sites (Name, Latitude, Longitude) VALUES (?, ?, ?)";
+        try {
+            PreparedStatement statement = con.prepareStatement(addSite, Statement.RETURN_GENERATED_KEYS);
+            statement.setString(1, this.name);
+            statement.setDouble(2, this.latitude);
+            statement.setDouble(3, this.longitude);
+            statement.executeUpdate();
+            ResultSet keys = statement.getGeneratedKeys();
+            if (keys.next()) {
+                this.siteId = keys.getInt(1);
+            }
+        } catch (SQLException e) {
+            throw SqlErrors.classify(e);
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    // Builds a site from a row of the Sites table
+    public static Site fromRow(ResultSet resultSet) throws SQLException {
+        return new Site(resultSet.getInt("Site_ID"), resultSet.getString("Name"),
+                resultSet.getDouble("Latitude"), resultSet.getDouble("Longitude"));
+    }
+
+    public static class SiteBuilder {
+        private final String name;
+        private final double latitude;
+        private final double longitude;
+
+        public SiteBuilder(String name, double latitude, double longitude) {
+            if (!Util.validName(name)) {
+                throw new IllegalArgumentException("Invalid site name!");
+            }
+            if (!(latitude >= -90 && latitude <= 90 && longitude >= -180 && longitude <= 180)) {
+                throw new IllegalArgumentException("Invalid coordinates!");
+            }
+            this.name = name;
+            this.latitude = latitude;
+            this.longitude = longitude;
+        }
+
+        public Site build() {
+            return new Site(this);
+        }
+    }
+
+    public static class SiteGetter {
+        private final String name;
+
+        public SiteGetter(String name) {
+            this.name = name;
+        }
+
+        public Site get() throws SQLException {
+            if (!Util.validName(name)) {
+                return null;
+            }
+
+            ConnectionManager cm = new ConnectionManager();
+            Connection con = cm.createConnection();
+
+            String getSite = "SELECT Site_ID, Name, Latitude, Longitude FROM Sites WHERE Name = ?";
+            try {
+                PreparedStatement statement = con.prepareStatement(getSite);
+                statement.setString(1, this.name);
+                ResultSet resultSet = statement.executeQuery();
+                return resultSet.next() ? fromRow(resultSet) : null;
+            } catch (SQLException e) {
+                throw SqlErrors.classify(e);
+            } finally {
+                cm.closeConnection();
+            }
+        }
+    }
+}
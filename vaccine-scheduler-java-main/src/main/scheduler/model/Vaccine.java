@@ -1,6 +1,10 @@
 package scheduler.model;
 
 import scheduler.db.ConnectionManager;
+import scheduler.error.InsufficientDosesException;
+import scheduler.error.NotFoundException;
+import scheduler.error.SqlErrors;
+import scheduler.util.Util;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
@@ -8,17 +12,31 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 
 public class Vaccine {
+    // bounds of a dose series, also enforced by CK_Vaccines_Series
+    public static final int MAX_SERIES_DOSES = 10;
+    public static final int MAX_INTERVAL_DAYS = 365;
+
     private final String vaccineName;
     private int availableDoses;
+    // the dose series: how many doses, and how many days may pass between two consecutive doses
+    private int seriesDoses;
+    private int minIntervalDays;
+    private int maxIntervalDays;
 
     private Vaccine(VaccineBuilder builder) {
         this.vaccineName = builder.vaccineName;
         this.availableDoses = builder.availableDoses;
+        this.seriesDoses = 1;
+        this.minIntervalDays = 0;
+        this.maxIntervalDays = 0;
     }
 
     private Vaccine(VaccineGetter getter) {
         this.vaccineName = getter.vaccineName;
         this.availableDoses = getter.availableDoses;
+        this.seriesDoses = getter.seriesDoses;
+        this.minIntervalDays = getter.minIntervalDays;
+        this.maxIntervalDays = getter.maxIntervalDays;
     }
 
     // Getters
@@ -30,18 +48,30 @@ public class Vaccine {
         return availableDoses;
     }
 
+    public int getSeriesDoses() {
+        return seriesDoses;
+    }
+
+    public int getMinIntervalDays() {
+        return minIntervalDays;
+    }
+
+    public int getMaxIntervalDays() {
+        return maxIntervalDays;
+    }
+
     public void saveToDB() throws SQLException {
         ConnectionManager cm = new ConnectionManager();
         Connection con = cm.createConnection();
 
-        String addDoses = "INSERT INTO vaccines VALUES (?, ?)";
+        String addDoses = "INSERT INTO vaccines (Name, Doses) VALUES (?, ?)";
         try {
             PreparedStatement statement = con.prepareStatement(addDoses);
             statement.setString(1, this.vaccineName);
             statement.setInt(2, this.availableDoses);
             statement.executeUpdate();
         } catch (SQLException e) {
-            throw new SQLException();
+            throw SqlErrors.classify(e);
         } finally {
             cm.closeConnection();
         }
@@ -52,19 +82,22 @@ public class Vaccine {
         if (num <= 0) {
             throw new IllegalArgumentException("Argument cannot be negative!");
         }
-        this.availableDoses += num;
 
         ConnectionManager cm = new ConnectionManager();
         Connection con = cm.createConnection();
 
-        String removeAvailability  = "UPDATE vaccines SET Doses = ? WHERE name = ?;";
+        // update relative to the stored value so concurrent updates are not lost
+        String addAvailability = "UPDATE vaccines SET Doses = Doses + ? WHERE name = ?;";
         try {
-            PreparedStatement statement = con.prepareStatement(removeAvailability);
-            statement.setInt(1, this.availableDoses);
+            PreparedStatement statement = con.prepareStatement(addAvailability);
+            statement.setInt(1, num);
             statement.setString(2, this.vaccineName);
-            statement.executeUpdate();
+            if (statement.executeUpdate() == 0) {
+                throw new NotFoundException("Vaccine " + this.vaccineName + " does not exist!");
+            }
+            this.availableDoses += num;
         } catch (SQLException e) {
-            throw new SQLException();
+            throw SqlErrors.classify(e);
         } finally {
             cm.closeConnection();
         }
@@ -72,21 +105,75 @@ public class Vaccine {
 
     // Decrement the available doses
     public void decreaseAvailableDoses(int num) throws SQLException {
-        if (this.availableDoses - num < 0) {
-            throw new IllegalArgumentException("Not enough available doses!");
-        }
-        this.availableDoses -= num;
         ConnectionManager cm = new ConnectionManager();
         Connection con = cm.createConnection();
 
-        String removeAvailability  = "UPDATE vaccines SET Doses = ? WHERE name = ?;";
+        // the Doses >= ? guard makes the check and the update a single atomic step
+        String removeAvailability = "UPDATE vaccines SET Doses = Doses - ? WHERE name = ? AND Doses >= ?;";
         try {
             PreparedStatement statement = con.prepareStatement(removeAvailability);
-            statement.setInt(1, this.availableDoses);
+            statement.setInt(1, num);
             statement.setString(2, this.vaccineName);
-            statement.executeUpdate();
+            statement.setInt(3, num);
+            if (statement.executeUpdate() == 0) {
+                throw new InsufficientDosesException("Not enough available doses!");
+            }
+            this.availableDoses -= num;
+        } catch (SQLException e) {
+            throw SqlErrors.classify(e);
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    // Add doses to a vaccine inside the caller's transaction, creating the vaccine if it does not exist yet
+    public static void addDoses(Connection con, String vaccineName, int num) throws SQLException {
+        if (num <= 0) {
+            throw new IllegalArgumentException("Argument cannot be negative!");
+        }
+        if (!Util.validName(vaccineName)) {
+            throw new IllegalArgumentException("Invalid vaccine name!");
+        }
+        // one statement, with HOLDLOCK keeping the key range locked from the match to the insert, so two
+        // first-time add_doses of the same vaccine cannot both insert it
+        PreparedStatement upsert = con.prepareStatement("MERGE Vaccines WITH (HOLDLOCK) AS v " +
+                "USING (SELECT ? AS Name, ? AS Doses) AS s ON v.Name = s.Name " +
+                "WHEN MATCHED THEN UPDATE SET Doses = v.Doses + s.Doses " +
+                "WHEN NOT MATCHED THEN INSERT (Name, Doses) VALUES (s.Name, s.Doses);");
+        upsert.setString(1, vaccineName);
+        upsert.setInt(2, num);
+        upsert.executeUpdate();
+    }
+
+    // Define the dose series, e.g. 2 doses 21 to 42 days apart
+    public void updateSeries(int doses, int minIntervalDays, int maxIntervalDays) throws SQLException {
+        if (doses < 1 || doses > MAX_SERIES_DOSES || minIntervalDays < 0 || maxIntervalDays < minIntervalDays ||
+                maxIntervalDays > MAX_INTERVAL_DAYS) {
+            throw new IllegalArgumentException("Invalid dose series!");
+        }
+        if (doses > 1 && minIntervalDays < 1) {
+            throw new IllegalArgumentException("Doses of a series must be on different days!");
+        }
+
+        ConnectionManager cm = new ConnectionManager();
+        Connection con = cm.createConnection();
+
+        String updateSeries = "UPDATE vaccines SET Series_Doses = ?, Min_Interval_Days = ?, " +
+                "Max_Interval_Days = ? WHERE name = ?;";
+        try {
+            PreparedStatement statement = con.prepareStatement(updateSeries);
+            statement.setInt(1, doses);
+            statement.setInt(2, minIntervalDays);
+            statement.setInt(3, maxIntervalDays);
+            statement.setString(4, this.vaccineName);
+            if (statement.executeUpdate() == 0) {
+                throw new NotFoundException("Vaccine " + this.vaccineName + " does not exist!");
+            }
+            this.seriesDoses = doses;
+            this.minIntervalDays = minIntervalDays;
+            this.maxIntervalDays = maxIntervalDays;
         } catch (SQLException e) {
-            throw new SQLException();
+            throw SqlErrors.classify(e);
         } finally {
             cm.closeConnection();
         }
@@ -97,6 +184,9 @@ public class Vaccine {
         return "Vaccine{" +
                 "vaccineName='" + vaccineName + '\'' +
                 ", availableDoses=" + availableDoses +
+                ", seriesDoses=" + seriesDoses +
+                ", minIntervalDays=" + minIntervalDays +
+                ", maxIntervalDays=" + maxIntervalDays +
                 '}';
     }
 
@@ -105,6 +195,12 @@ public class Vaccine {
         private int availableDoses;
 
         public VaccineBuilder(String vaccineName, int availableDoses) {
+            if (!Util.validName(vaccineName)) {
+                throw new IllegalArgumentException("Invalid vaccine name!");
+            }
+            if (availableDoses < 0) {
+                throw new IllegalArgumentException("Argument cannot be negative!");
+            }
             this.vaccineName = vaccineName;
             this.availableDoses = availableDoses;
         }
@@ -117,27 +213,39 @@ public class Vaccine {
     public static class VaccineGetter {
         private final String vaccineName;
         private int availableDoses;
+        private int seriesDoses;
+        private int minIntervalDays;
+        private int maxIntervalDays;
 
         public VaccineGetter(String vaccineName) {
             this.vaccineName = vaccineName;
         }
 
         public Vaccine get() throws SQLException {
+            // a name that could never have been stored cannot exist, so skip the lookup
+            if (!Util.validName(vaccineName)) {
+                return null;
+            }
+
             ConnectionManager cm = new ConnectionManager();
             Connection con = cm.createConnection();
 
-            String getVaccine = "SELECT Name, Doses FROM Vaccines WHERE Name = ?";
+            String getVaccine = "SELECT Name, Doses, Series_Doses, Min_Interval_Days, Max_Interval_Days " +
+                    "FROM Vaccines WHERE Name = ?";
             try {
                 PreparedStatement statement = con.prepareStatement(getVaccine);
                 statement.setString(1, this.vaccineName);
                 ResultSet resultSet = statement.executeQuery();
                 while (resultSet.next()) {
                     this.availableDoses = resultSet.getInt("Doses");
+                    this.seriesDoses = resultSet.getInt("Series_Doses");
+                    this.minIntervalDays = resultSet.getInt("Min_Interval_Days");
+                    this.maxIntervalDays = resultSet.getInt("Max_Interval_Days");
                     return new Vaccine(this);
                 }
                 return null;
             } catch (SQLException e) {
-                throw new SQLException();
+                throw SqlErrors.classify(e);
             } finally {
                 cm.closeConnection();
             }
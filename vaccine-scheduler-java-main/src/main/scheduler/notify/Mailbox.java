@@ -0,0 +1,50 @@
+package scheduler.notify;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+// Pending notifications of one session. Changes to the same topic are coalesced into one message,
+// and the number of pending topics is bounded: past the bound the mailbox stops accepting messages and
+// asks its reader to refresh instead, so a slow reader can never slow down or exhaust the publishers.
+public class Mailbox {
+    private static final int CAPACITY = 100;
+
+    private final LinkedHashMap<String, Pending> pending = new LinkedHashMap<>();
+    private boolean overflowed = false;
+
+    synchronized void offer(String topic, String message) {
+        Pending p = pending.get(topic);
+        if (p != null) {
+            p.message = message;
+            p.changes++;
+        } else if (pending.size() < CAPACITY) {
+            pending.put(topic, new Pending(message));
+        } else {
+            overflowed = true;
+        }
+    }
+
+    // Take every pending notification, oldest topic first
+    public synchronized List<String> drain() {
+        List<String> messages = new ArrayList<>(pending.size() + 1);
+        for (Pending p : pending.values()) {
+            messages.add(p.changes == 1 ? p.message : p.message + " (" + p.changes + " changes)");
+        }
+        if (overflowed) {
+            messages.add("Too many changes to list, please refresh your schedule");
+        }
+        pending.clear();
+        overflowed = false;
+        return messages;
+    }
+
+    private static class Pending {
+        private String message;
+        private int changes = 1;
+
+        private Pending(String message) {
+            this.message = message;
+        }
+    }
+}
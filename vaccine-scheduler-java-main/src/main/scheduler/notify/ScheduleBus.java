@@ -0,0 +1,136 @@
+package scheduler.notify;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// In-process publish/subscribe of schedule changes. Sessions subscribe to a caregiver's schedule or to a
+// date and vaccine pair; every committed change is delivered once to each interested mailbox, and
+// changes to the same subscription are coalesced while they wait to be read.
+//
+// Entries are removed as soon as their last mailbox unsubscribes, and dates that have passed are dropped
+// whole, so the maps only hold live subscriptions. A set is only changed inside compute on its key, so a
+// set emptied and removed by one thread is never added to by another.
+public class ScheduleBus {
+
+    private static final Map<String, Set<Mailbox>> caregiverSubscribers = new ConcurrentHashMap<>();
+    // date and vaccine subscriptions, indexed by date; each entry maps a vaccine to its mailboxes
+    private static final Map<Date, Map<String, Set<Mailbox>>> slotSubscribers = new ConcurrentHashMap<>();
+
+    public static void subscribeCaregiver(Mailbox mailbox, String caregiver) {
+        caregiverSubscribers.compute(caregiver, (k, mailboxes) -> add(mailboxes, mailbox));
+    }
+
+    public static void subscribeSlot(Mailbox mailbox, Date d, String vaccine) {
+        removePastDates();
+        slotSubscribers.compute(d, (k, byVaccine) -> {
+            Map<String, Set<Mailbox>> map = byVaccine != null ? byVaccine : new ConcurrentHashMap<>();
+            map.compute(vaccine, (v, mailboxes) -> add(mailboxes, mailbox));
+            return map;
+        });
+    }
+
+    public static void unsubscribeAll(Mailbox mailbox) {
+        for (String caregiver : caregiverSubscribers.keySet()) {
+            caregiverSubscribers.computeIfPresent(caregiver, (k, mailboxes) -> remove(mailboxes, mailbox));
+        }
+        for (Date d : slotSubscribers.keySet()) {
+            slotSubscribers.computeIfPresent(d, (k, byVaccine) -> {
+                for (String vaccine : byVaccine.keySet()) {
+                    byVaccine.computeIfPresent(vaccine, (v, mailboxes) -> remove(mailboxes, mailbox));
+                }
+                return byVaccine.isEmpty() ? null : byVaccine;
+            });
+        }
+    }
+
+    // Number of caregivers and dates with subscribers
+    public static int subscriptions() {
+        return caregiverSubscribers.size() + slotSubscribers.size();
+    }
+
+    // An appointment was booked: the caregiver's schedule and the date's availability changed
+    public static void appointmentBooked(Date d, String vaccine, String caregiver) {
+        Map<Mailbox, Message> messages = new HashMap<>();
+        addSlot(messages, d, vaccine, "New booking for " + vaccine + " on " + d);
+        addCaregiver(messages, caregiver, "New appointment on " + d + " for " + vaccine);
+        deliver(messages);
+    }
+
+    // A caregiver became available: every vaccine on that date may have a new slot
+    public static void availabilityUploaded(Date d, String caregiver) {
+        Map<Mailbox, Message> messages = new HashMap<>();
+        for (String vaccine : slotsOn(d).keySet()) {
+            addSlot(messages, d, vaccine, "Caregiver " + caregiver + " is available on " + d);
+        }
+        addCaregiver(messages, caregiver, "Availability on " + d + " uploaded");
+        deliver(messages);
+    }
+
+    // Doses were added: every subscribed date for that vaccine may have a new slot
+    public static void dosesAdded(String vaccine, int doses) {
+        removePastDates();
+        Map<Mailbox, Message> messages = new HashMap<>();
+        for (Date d : slotSubscribers.keySet()) {
+            addSlot(messages, d, vaccine, doses + " doses of " + vaccine + " were added");
+        }
+        deliver(messages);
+    }
+
+    private static void addSlot(Map<Mailbox, Message> messages, Date d, String vaccine, String text) {
+        String topic = "slot " + d + " " + vaccine;
+        for (Mailbox mailbox : slotsOn(d).getOrDefault(vaccine, Collections.emptySet())) {
+            messages.putIfAbsent(mailbox, new Message(topic, text));
+        }
+    }
+
+    private static void addCaregiver(Map<Mailbox, Message> messages, String caregiver, String text) {
+        String topic = "caregiver " + caregiver;
+        for (Mailbox mailbox : caregiverSubscribers.getOrDefault(caregiver, Collections.emptySet())) {
+            messages.putIfAbsent(mailbox, new Message(topic, text));
+        }
+    }
+
+    private static Set<Mailbox> add(Set<Mailbox> mailboxes, Mailbox mailbox) {
+        Set<Mailbox> set = mailboxes != null ? mailboxes : ConcurrentHashMap.newKeySet();
+        set.add(mailbox);
+        return set;
+    }
+
+    // Returning null from compute removes the entry
+    private static Set<Mailbox> remove(Set<Mailbox> mailboxes, Mailbox mailbox) {
+        mailboxes.remove(mailbox);
+        return mailboxes.isEmpty() ? null : mailboxes;
+    }
+
+    // Nothing more can change on a date that has passed
+    private static void removePastDates() {
+        Date today = Date.valueOf(LocalDate.now());
+        slotSubscribers.keySet().removeIf(d -> d.before(today));
+    }
+
+    private static Map<String, Set<Mailbox>> slotsOn(Date d) {
+        return slotSubscribers.getOrDefault(d, Collections.emptyMap());
+    }
+
+    // One message per mailbox, even if the change matched several of its subscriptions
+    private static void deliver(Map<Mailbox, Message> messages) {
+        for (Map.Entry<Mailbox, Message> entry : messages.entrySet()) {
+            entry.getKey().offer(entry.getValue().topic, entry.getValue().text);
+        }
+    }
+
+    private static class Message {
+        private final String topic;
+        private final String text;
+
+        private Message(String topic, String text) {
+            this.topic = topic;
+            this.text = text;
+        }
+    }
+}
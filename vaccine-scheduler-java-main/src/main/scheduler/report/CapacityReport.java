@@ -0,0 +1,246 @@
+package scheduler.report;
+
+import scheduler.db.ArchivalJob;
+import scheduler.db.ConnectionManager;
+import scheduler.util.NameDictionary;
+
+import java.io.PrintStream;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+public class CapacityReport {
+
+    // rows are pulled from the server in chunks of this size instead of all at once
+    private static final int FETCH_SIZE = 10000;
+    // a partition of at most this many days is aggregated by a single task
+    private static final int DAYS_PER_TASK = 7;
+    // the per-day arrays are allocated up front and every day is printed, so the range is bounded
+    public static final int MAX_DAYS = 5 * 366;
+
+    private final LocalDate from;
+    private final int days;
+
+    // dictionaries mapping names to dense ids so all per-row data is stored in int columns
+    private final NameDictionary caregiverIds = new NameDictionary();
+    private final NameDictionary vaccineIds = new NameDictionary();
+    private int[] vaccineDoses = new int[0];
+
+    // appointment rows sorted by date; dayStart[d]..dayStart[d + 1] are the rows of day d
+    private final IntColumn appointmentCaregivers = new IntColumn();
+    private final IntColumn appointmentVaccines = new IntColumn();
+    private int[] appointmentDayStart;
+
+    // availability rows sorted by date, indexed the same way
+    private final IntColumn availableCaregivers = new IntColumn();
+    private int[] availabilityDayStart;
+
+    // aggregated results, one slot per day (and per vaccine)
+    private int[] available;
+    private int[] booked;
+    private int[] idle;
+    private int[][] bookedByVaccine;
+
+    public CapacityReport(Date from, Date to) {
+        if (from.after(to)) {
+            throw new IllegalArgumentException("The start date must not be after the end date!");
+        }
+        long days = to.toLocalDate().toEpochDay() - from.toLocalDate().toEpochDay() + 1;
+        if (days > MAX_DAYS) {
+            throw new IllegalArgumentException("The range must not be longer than " + MAX_DAYS + " days!");
+        }
+        this.from = from.toLocalDate();
+        this.days = (int) days;
+    }
+
+    // Stream both tables once and aggregate them per date and vaccine
+    public void compute() throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        Connection con = cm.createConnection();
+
+        Date start = Date.valueOf(from);
+        Date end = Date.valueOf(from.plusDays(days - 1));
+        try {
+            loadVaccines(con);
+            // ranges that start after the archive horizon never read the archive tables
+            boolean includeArchive = ArchivalJob.mayBeArchived(start);
+            PreparedStatement getAppointments = con.prepareStatement(rangeQuery(
+                    "Appointment_time, Caregiver_Username, Vaccine_name", "Appointments", "Appointment_time",
+                    includeArchive));
+            getAppointments.setFetchSize(FETCH_SIZE);
+            bindRange(getAppointments, start, end, includeArchive);
+            ResultSet rs1 = getAppointments.executeQuery();
+            appointmentDayStart = new int[days + 1];
+            while (rs1.next()) {
+                appointmentDayStart[dayOf(rs1.getDate(1)) + 1]++;
+                appointmentCaregivers.add(caregiverIds.intern(rs1.getString(2)));
+                appointmentVaccines.add(vaccineIdOf(rs1.getString(3)));
+            }
+
+            PreparedStatement getAvailabilities = con.prepareStatement(rangeQuery(
+                    "Time, Username", "Availabilities", "Time", includeArchive));
+            getAvailabilities.setFetchSize(FETCH_SIZE);
+            bindRange(getAvailabilities, start, end, includeArchive);
+            ResultSet rs2 = getAvailabilities.executeQuery();
+            availabilityDayStart = new int[days + 1];
+            while (rs2.next()) {
+                availabilityDayStart[dayOf(rs2.getDate(1)) + 1]++;
+                availableCaregivers.add(caregiverIds.intern(rs2.getString(2)));
+            }
+        } finally {
+            cm.closeConnection();
+        }
+
+        // turn the per-day counts into offsets of the first row of each day
+        for (int d = 0; d < days; d++) {
+            appointmentDayStart[d + 1] += appointmentDayStart[d];
+            availabilityDayStart[d + 1] += availabilityDayStart[d];
+        }
+
+        available = new int[days];
+        booked = new int[days];
+        idle = new int[days];
+        bookedByVaccine = new int[days][vaccineIds.size()];
+        ForkJoinPool.commonPool().invoke(new Aggregate(0, days));
+    }
+
+    public void print(PrintStream out) {
+        int totalAvailable = 0;
+        int totalBooked = 0;
+        int[] totalByVaccine = new int[vaccineIds.size()];
+        for (int d = 0; d < days; d++) {
+            if (available[d] == 0 && booked[d] == 0) {
+                continue;
+            }
+            out.println(from.plusDays(d) + ": Available caregivers: " + available[d] +
+                    ", Booked: " + booked[d] +
+                    ", Utilization: " + utilization(booked[d], available[d]) +
+                    ", Shortfall: " + Math.max(0, booked[d] - available[d]) +
+                    ", Idle caregivers: " + idle[d]);
+            for (int v = 0; v < vaccineIds.size(); v++) {
+                if (bookedByVaccine[d][v] > 0) {
+                    out.println("    Vaccine: " + vaccineIds.name(v) + ", Booked: " + bookedByVaccine[d][v]);
+                    totalByVaccine[v] += bookedByVaccine[d][v];
+                }
+            }
+            totalAvailable += available[d];
+            totalBooked += booked[d];
+        }
+        out.println("Total: Available caregivers: " + totalAvailable + ", Booked: " + totalBooked +
+                ", Utilization: " + utilization(totalBooked, totalAvailable));
+        for (int v = 0; v < vaccineIds.size(); v++) {
+            out.println("Vaccine: " + vaccineIds.name(v) + ", Booked: " + totalByVaccine[v] +
+                    ", Available Doses: " + vaccineDoses[v]);
+        }
+    }
+
+    private static String rangeQuery(String columns, String table, String dateColumn, boolean includeArchive) {
+        String hot = "SELECT " + columns + " FROM " + table + " WHERE " + dateColumn + " BETWEEN ? AND ?";
+        if (!includeArchive) {
+            return hot + " ORDER BY " + dateColumn;
+        }
+        return hot + " UNION ALL SELECT " + columns + " FROM " + table + "_Archive WHERE " + dateColumn +
+                " BETWEEN ? AND ? ORDER BY " + dateColumn;
+    }
+
+    private static void bindRange(PreparedStatement statement, Date start, Date end, boolean includeArchive)
+            throws SQLException {
+        statement.setDate(1, start);
+        statement.setDate(2, end);
+        if (includeArchive) {
+            statement.setDate(3, start);
+            statement.setDate(4, end);
+        }
+    }
+
+    private void loadVaccines(Connection con) throws SQLException {
+        PreparedStatement getVaccines = con.prepareStatement("SELECT Name, Doses FROM Vaccines");
+        ResultSet rs = getVaccines.executeQuery();
+        while (rs.next()) {
+            int id = vaccineIdOf(rs.getString(1));
+            vaccineDoses[id] = rs.getInt(2);
+        }
+    }
+
+    private int vaccineIdOf(String name) {
+        int id = vaccineIds.intern(name);
+        if (id == vaccineDoses.length) {
+            vaccineDoses = Arrays.copyOf(vaccineDoses, vaccineIds.size());
+        }
+        return id;
+    }
+
+    private int dayOf(Date d) {
+        return (int) (d.toLocalDate().toEpochDay() - from.toEpochDay());
+    }
+
+    private static String utilization(int booked, int available) {
+        if (available == 0) {
+            return "n/a";
+        }
+        return String.format("%.1f%%", 100.0 * booked / available);
+    }
+
+    // Aggregates a range of days; days never overlap between tasks so no merging is needed
+    private class Aggregate extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int lo;
+        private final int hi;
+
+        private Aggregate(int lo, int hi) {
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo > DAYS_PER_TASK) {
+                int mid = (lo + hi) >>> 1;
+                invokeAll(new Aggregate(lo, mid), new Aggregate(mid, hi));
+                return;
+            }
+            BitSet busy = new BitSet(caregiverIds.size());
+            for (int d = lo; d < hi; d++) {
+                busy.clear();
+                for (int i = appointmentDayStart[d]; i < appointmentDayStart[d + 1]; i++) {
+                    busy.set(appointmentCaregivers.get(i));
+                    bookedByVaccine[d][appointmentVaccines.get(i)]++;
+                }
+                booked[d] = appointmentDayStart[d + 1] - appointmentDayStart[d];
+                available[d] = availabilityDayStart[d + 1] - availabilityDayStart[d];
+                int idleCaregivers = 0;
+                for (int i = availabilityDayStart[d]; i < availabilityDayStart[d + 1]; i++) {
+                    if (!busy.get(availableCaregivers.get(i))) {
+                        idleCaregivers++;
+                    }
+                }
+                idle[d] = idleCaregivers;
+            }
+        }
+    }
+
+    // A growable column of ints, avoiding one boxed Integer per row
+    private static class IntColumn {
+        private int[] values = new int[1024];
+        private int size = 0;
+
+        private void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        private int get(int i) {
+            return values[i];
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package scheduler.util;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Blocks a username after too many failed logins. Every username tried gets an entry, so entries are
+// swept once their window has passed, and the map is capped: when it is full of recent failures, as
+// when random usernames are sprayed, the entries that have not reached the limit are dropped first.
+public class LoginRateLimiter {
+
+    // constants for limiting failed logins and bounding the memory that takes
+    private static final int MAX_FAILURES = 5;
+    private static final long WINDOW_MILLIS = 15 * 60 * 1000;
+    private static final int MAX_TRACKED_USERS = 100000;
+    private static final long SWEEP_INTERVAL_MILLIS = 60 * 1000;
+    private static final long FULL_SWEEP_INTERVAL_MILLIS = 1000;
+
+    private static final ConcurrentHashMap<String, Failures> failures = new ConcurrentHashMap<>();
+    private static final AtomicLong lastSweep = new AtomicLong(System.currentTimeMillis());
+
+    // Returns true if the user has too many recent failed logins; checked before any database access
+    public static boolean isBlocked(String role, String username) {
+        Failures f = failures.get(role + ":" + username);
+        if (f == null) {
+            return false;
+        }
+        synchronized (f) {
+            if (System.currentTimeMillis() - f.windowStart > WINDOW_MILLIS) {
+                failures.remove(role + ":" + username, f);
+                return false;
+            }
+            return f.count >= MAX_FAILURES;
+        }
+    }
+
+    public static void recordFailure(String role, String username) {
+        String key = role + ":" + username;
+        sweep(!failures.containsKey(key) && failures.size() >= MAX_TRACKED_USERS);
+        if (!failures.containsKey(key) && failures.size() >= MAX_TRACKED_USERS) {
+            // every tracked user is blocked; keep those rather than grow
+            return;
+        }
+        Failures f = failures.computeIfAbsent(key, k -> new Failures());
+        synchronized (f) {
+            long now = System.currentTimeMillis();
+            if (now - f.windowStart > WINDOW_MILLIS) {
+                f.windowStart = now;
+                f.count = 0;
+            }
+            f.count++;
+        }
+    }
+
+    public static void recordSuccess(String role, String username) {
+        failures.remove(role + ":" + username);
+    }
+
+    private static void sweep(boolean full) {
+        long now = System.currentTimeMillis();
+        long swept = lastSweep.get();
+        // a full map is swept more often, but still not on every failure
+        long interval = full ? FULL_SWEEP_INTERVAL_MILLIS : SWEEP_INTERVAL_MILLIS;
+        if (now - swept < interval || !lastSweep.compareAndSet(swept, now)) {
+            return;
+        }
+        failures.values().removeIf(f -> f.expired(now));
+        if (failures.size() >= MAX_TRACKED_USERS) {
+            failures.values().removeIf(f -> !f.blocked());
+        }
+    }
+
+    private static class Failures {
+        private long windowStart = System.currentTimeMillis();
+        private int count = 0;
+
+        private synchronized boolean expired(long now) {
+            return now - windowStart > WINDOW_MILLIS;
+        }
+
+        private synchronized boolean blocked() {
+            return count >= MAX_FAILURES;
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package scheduler.util;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.locks.StampedLock;
+
+// Maps names (usernames, vaccine names) to dense int IDs 0, 1, 2, ... so in-memory structures can hold ints
+// instead of Strings. The characters live off-heap in one direct buffer; on the heap there are only three
+// int arrays, so a million names cost the collector three objects instead of two million.
+//
+// Each entry is a 2-byte header followed by the characters. Like the JDK's compact strings, a name whose
+// characters all fit in a byte is stored with one byte per character, otherwise with two; the top bit of the
+// header tells which. Lookups compare against the String directly, so they allocate nothing.
+public class NameDictionary {
+    public static final int NOT_FOUND = -1;
+
+    // caregiver usernames, for the per-caregiver booking counters; other kinds of names get dictionaries of
+    // their own, so the IDs of each stay dense enough to index arrays with
+    public static final NameDictionary CAREGIVERS = new NameDictionary();
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int WIDE = 0x8000;
+
+    private final StampedLock lock = new StampedLock();
+    private ByteBuffer chars;
+    // offsets[id] is the position of the entry in chars
+    private int[] offsets;
+    // open addressing with linear probing: slots hold id + 1 (0 is empty) next to the name's hash
+    private int[] slots;
+    private int[] slotHashes;
+    private int size;
+
+    public NameDictionary() {
+        chars = ByteBuffer.allocateDirect(INITIAL_CAPACITY * 16);
+        offsets = new int[INITIAL_CAPACITY];
+        slots = new int[INITIAL_CAPACITY * 2];
+        slotHashes = new int[INITIAL_CAPACITY * 2];
+    }
+
+    // Returns the ID of the name, adding it if it is new
+    public int intern(String name) {
+        int hash = hash(name);
+        long stamp = lock.readLock();
+        try {
+            int id = find(name, hash);
+            if (id != NOT_FOUND) {
+                return id;
+            }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+        stamp = lock.writeLock();
+        try {
+            // another thread may have added it in between
+            int id = find(name, hash);
+            return id != NOT_FOUND ? id : add(name, hash);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // Returns the ID of the name, or NOT_FOUND without adding it
+    public int lookup(String name) {
+        int hash = hash(name);
+        long stamp = lock.readLock();
+        try {
+            return find(name, hash);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public String name(int id) {
+        long stamp = lock.readLock();
+        try {
+            if (id < 0 || id >= size) {
+                throw new IllegalArgumentException("Unknown name ID: " + id);
+            }
+            int offset = offsets[id];
+            int header = chars.getShort(offset) & 0xFFFF;
+            int length = header & ~WIDE;
+            char[] value = new char[length];
+            if ((header & WIDE) == 0) {
+                for (int i = 0; i < length; i++) {
+                    value[i] = (char) (chars.get(offset + 2 + i) & 0xFF);
+                }
+            } else {
+                for (int i = 0; i < length; i++) {
+                    value[i] = chars.getChar(offset + 2 + 2 * i);
+                }
+            }
+            return new String(value);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public int size() {
+        long stamp = lock.readLock();
+        try {
+            return size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    // Bytes held by the dictionary: the off-heap characters plus the on-heap arrays
+    public long footprint() {
+        long stamp = lock.readLock();
+        try {
+            return chars.capacity() + 4L * (offsets.length + slots.length + slotHashes.length);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private int find(String name, int hash) {
+        int mask = slots.length - 1;
+        for (int slot = hash & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+            if (slotHashes[slot] == hash && matches(slots[slot] - 1, name)) {
+                return slots[slot] - 1;
+            }
+        }
+        return NOT_FOUND;
+    }
+
+    private boolean matches(int id, String name) {
+        int offset = offsets[id];
+        int header = chars.getShort(offset) & 0xFFFF;
+        int length = header & ~WIDE;
+        if (length != name.length()) {
+            return false;
+        }
+        if ((header & WIDE) == 0) {
+            for (int i = 0; i < length; i++) {
+                if ((chars.get(offset + 2 + i) & 0xFF) != name.charAt(i)) {
+                    return false;
+                }
+            }
+        } else {
+            for (int i = 0; i < length; i++) {
+                if (chars.getChar(offset + 2 + 2 * i) != name.charAt(i)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private int add(String name, int hash) {
+        int length = name.length();
+        if (length >= WIDE) {
+            throw new IllegalArgumentException("Name is too long!");
+        }
+        boolean wide = false;
+        for (int i = 0; i < length && !wide; i++) {
+            wide = name.charAt(i) > 0xFF;
+        }
+        int entryBytes = 2 + (wide ? 2 * length : length);
+        if (chars.remaining() < entryBytes) {
+            growChars(entryBytes);
+        }
+
+        int id = size;
+        int offset = chars.position();
+        chars.putShort((short) (wide ? length | WIDE : length));
+        for (int i = 0; i < length; i++) {
+            if (wide) {
+                chars.putChar(name.charAt(i));
+            } else {
+                chars.put((byte) name.charAt(i));
+            }
+        }
+        if (id == offsets.length) {
+            offsets = Arrays.copyOf(offsets, id * 2);
+        }
+        offsets[id] = offset;
+        size++;
+
+        // keep the table at most half full so probe sequences stay short
+        if (size * 2 > slots.length) {
+            rehash(slots.length * 2);
+        }
+        place(id, hash);
+        return id;
+    }
+
+    private void place(int id, int hash) {
+        int mask = slots.length - 1;
+        int slot = hash & mask;
+        while (slots[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        slots[slot] = id + 1;
+        slotHashes[slot] = hash;
+    }
+
+    private void rehash(int capacity) {
+        int[] oldSlots = slots;
+        int[] oldHashes = slotHashes;
+        slots = new int[capacity];
+        slotHashes = new int[capacity];
+        for (int i = 0; i < oldSlots.length; i++) {
+            if (oldSlots[i] != 0) {
+                place(oldSlots[i] - 1, oldHashes[i]);
+            }
+        }
+    }
+
+    private void growChars(int needed) {
+        long capacity = Math.max(2L * chars.capacity(), (long) chars.position() + needed);
+        if (capacity > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Name dictionary is full!");
+        }
+        ByteBuffer grown = ByteBuffer.allocateDirect((int) capacity);
+        chars.flip();
+        grown.put(chars);
+        // the old buffer's memory is released once the collector finds it unreachable
+        chars = grown;
+    }
+
+    private static int hash(String name) {
+        // String caches its hash code; spread its bits since the table uses the low ones
+        int h = name.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
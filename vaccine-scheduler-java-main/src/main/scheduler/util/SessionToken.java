@@ -0,0 +1,137 @@
+package scheduler.util;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidKeyException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+public class SessionToken {
+
+    // roles that can be encoded into a token
+    public static final String PATIENT = "patient";
+    public static final String CAREGIVER = "caregiver";
+
+    // constants for signing tokens
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final long DEFAULT_TTL_SECONDS = 30 * 60;
+    private static final long MAX_TTL_SECONDS = 24 * 60 * 60;
+    private static final byte[] SECRET = loadSecret();
+    private static final long TTL_SECONDS = loadTtl();
+
+    // Mac objects are not thread-safe, so every thread gets its own
+    private static final ThreadLocal<Mac> MAC = ThreadLocal.withInitial(SessionToken::newMac);
+
+    private final String role;
+    private final String username;
+
+    private SessionToken(String role, String username) {
+        this.role = role;
+        this.username = username;
+    }
+
+    // Getters
+    public String getRole() {
+        return role;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    // Issue a signed token of the form <payload>.<signature> for the given user
+    public static String issue(String role, String username) {
+        long expiresAt = System.currentTimeMillis() / 1000 + TTL_SECONDS;
+        String payload = role + ":" + expiresAt + ":" + username;
+        byte[] payloadBytes = payload.getBytes(StandardCharsets.UTF_8);
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        return encoder.encodeToString(payloadBytes) + "." + encoder.encodeToString(sign(payloadBytes));
+    }
+
+    // Verify a token in memory; returns null if it is malformed, forged or expired
+    public static SessionToken verify(String token) {
+        if (token == null) {
+            return null;
+        }
+        int dot = token.indexOf('.');
+        if (dot <= 0 || dot == token.length() - 1) {
+            return null;
+        }
+        byte[] payloadBytes;
+        byte[] signature;
+        try {
+            Base64.Decoder decoder = Base64.getUrlDecoder();
+            payloadBytes = decoder.decode(token.substring(0, dot));
+            signature = decoder.decode(token.substring(dot + 1));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        // constant time comparison so the signature cannot be guessed byte by byte
+        if (!MessageDigest.isEqual(sign(payloadBytes), signature)) {
+            return null;
+        }
+        String[] parts = new String(payloadBytes, StandardCharsets.UTF_8).split(":", 3);
+        if (parts.length != 3 || !(parts[0].equals(PATIENT) || parts[0].equals(CAREGIVER))) {
+            return null;
+        }
+        long expiresAt;
+        try {
+            expiresAt = Long.parseLong(parts[1]);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        if (expiresAt < System.currentTimeMillis() / 1000) {
+            return null;
+        }
+        return new SessionToken(parts[0], parts[2]);
+    }
+
+    private static byte[] sign(byte[] payload) {
+        return MAC.get().doFinal(payload);
+    }
+
+    private static Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(new SecretKeySpec(SECRET, ALGORITHM));
+            return mac;
+        } catch (NoSuchAlgorithmException | InvalidKeyException ex) {
+            throw new IllegalStateException();
+        }
+    }
+
+    private static byte[] loadSecret() {
+        // a shared secret lets tokens survive restarts and be verified by every instance;
+        // without one we fall back to a random per-process key
+        String secret = System.getenv("SessionSecret");
+        if (secret != null && !secret.isEmpty()) {
+            return secret.getBytes(StandardCharsets.UTF_8);
+        }
+        SecureRandom random = new SecureRandom();
+        byte[] key = new byte[32];
+        random.nextBytes(key);
+        return key;
+    }
+
+    // SessionTTL must be positive, or every token would be expired when issued, and is capped at
+    // MAX_TTL_SECONDS
+    private static long loadTtl() {
+        String value = System.getenv("SessionTTL");
+        if (value == null) {
+            return DEFAULT_TTL_SECONDS;
+        }
+        long ttl;
+        try {
+            ttl = Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return DEFAULT_TTL_SECONDS;
+        }
+        if (ttl <= 0) {
+            return DEFAULT_TTL_SECONDS;
+        }
+        return Math.min(ttl, MAX_TTL_SECONDS);
+    }
+}
@@ -0,0 +1,168 @@
+package scheduler.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// A hierarchical timing wheel: schedules and cancellations are O(1) and a tick only touches the timeouts that
+// are due, so tens of thousands of pending timeouts cost next to nothing while they wait.
+//
+// Time is counted in ticks. Level L has 64 slots of 64^L ticks each; a timeout goes to the level of the
+// highest 6-bit group in which its deadline differs from the current tick. When the current tick enters a
+// new slot of level L, that slot's timeouts are re-placed on the lower levels, and level 0 finally runs them.
+// The four levels cover 64^4 ticks (19 days at the default 100ms).
+public class TimingWheel {
+
+    // constants for the shape of the wheel
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int LEVELS = 4;
+    private static final long MAX_TICKS = 1L << (SLOT_BITS * LEVELS);
+
+    private final long tickMillis;
+    private final long startMillis;
+    // each slot is a circular doubly-linked list with a sentinel, so a timeout can unlink itself
+    private final Timeout[][] wheels = new Timeout[LEVELS][SLOTS];
+    private long currentTick = 0;
+    private int pending = 0;
+    private ScheduledExecutorService ticker = null;
+
+    public TimingWheel(long tickMillis) {
+        this.tickMillis = tickMillis;
+        this.startMillis = System.currentTimeMillis();
+        for (Timeout[] wheel : wheels) {
+            for (int i = 0; i < SLOTS; i++) {
+                wheel[i] = new Timeout(0, null);
+            }
+        }
+    }
+
+    // Advance the wheel on a daemon thread once per tick
+    public synchronized void start(String threadName) {
+        if (ticker != null) {
+            return;
+        }
+        ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, threadName);
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleAtFixedRate(() -> advance(System.currentTimeMillis()), tickMillis, tickMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+        if (ticker != null) {
+            ticker.shutdownNow();
+            ticker = null;
+        }
+    }
+
+    // Run the task after the delay, rounded up to whole ticks
+    public synchronized Timeout schedule(Runnable task, long delayMillis) {
+        long elapsedMillis = System.currentTimeMillis() - startMillis;
+        long deadline = Math.max((elapsedMillis + delayMillis + tickMillis - 1) / tickMillis, currentTick + 1);
+        if (deadline - currentTick >= MAX_TICKS) {
+            throw new IllegalArgumentException("Delay is beyond the range of the timing wheel!");
+        }
+        Timeout timeout = new Timeout(deadline, task);
+        place(timeout);
+        pending++;
+        return timeout;
+    }
+
+    public synchronized int pending() {
+        return pending;
+    }
+
+    // Run every timeout that is due at the given time; the ticker calls this, and tests may call it directly
+    public void advance(long nowMillis) {
+        List<Runnable> due = new ArrayList<>();
+        synchronized (this) {
+            long target = (nowMillis - startMillis) / tickMillis;
+            while (currentTick < target) {
+                currentTick++;
+                // higher levels first, so what they hand down lands in slots that are still to be processed
+                for (int level = LEVELS - 1; level >= 1; level--) {
+                    if ((currentTick & ((1L << (SLOT_BITS * level)) - 1)) == 0) {
+                        cascade(level, (int) ((currentTick >>> (SLOT_BITS * level)) & (SLOTS - 1)));
+                    }
+                }
+                Timeout head = wheels[0][(int) (currentTick & (SLOTS - 1))];
+                while (head.next != head) {
+                    Timeout timeout = head.next;
+                    timeout.unlink();
+                    pending--;
+                    due.add(timeout.task);
+                }
+            }
+        }
+        // tasks run outside the lock, so they may schedule or cancel other timeouts
+        for (Runnable task : due) {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                System.err.println("Timeout task failed: " + e);
+            }
+        }
+    }
+
+    private void cascade(int level, int slot) {
+        Timeout head = wheels[level][slot];
+        while (head.next != head) {
+            Timeout timeout = head.next;
+            timeout.unlink();
+            place(timeout);
+        }
+    }
+
+    private void place(Timeout timeout) {
+        long differing = timeout.deadline ^ currentTick;
+        int level = 0;
+        while (level < LEVELS - 1 && (differing >>> (SLOT_BITS * (level + 1))) != 0) {
+            level++;
+        }
+        int slot = (int) ((timeout.deadline >>> (SLOT_BITS * level)) & (SLOTS - 1));
+        timeout.linkBefore(wheels[level][slot]);
+    }
+
+    public class Timeout {
+        private final long deadline;
+        private final Runnable task;
+        private Timeout prev = this;
+        private Timeout next = this;
+
+        private Timeout(long deadline, Runnable task) {
+            this.deadline = deadline;
+            this.task = task;
+        }
+
+        // Returns true if the task had not run yet and now never will
+        public boolean cancel() {
+            synchronized (TimingWheel.this) {
+                if (next == this) {
+                    return false;
+                }
+                unlink();
+                pending--;
+                return true;
+            }
+        }
+
+        private void linkBefore(Timeout head) {
+            prev = head.prev;
+            next = head;
+            head.prev.next = this;
+            head.prev = this;
+        }
+
+        private void unlink() {
+            prev.next = next;
+            next.prev = prev;
+            prev = this;
+            next = this;
+        }
+    }
+}
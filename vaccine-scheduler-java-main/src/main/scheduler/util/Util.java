@@ -14,6 +14,9 @@ public class Util {
     private static final int HASH_STRENGTH = 10;
     private static final int KEY_LENGTH = 16;
 
+    // usernames and vaccine names are stored as varchar(255)
+    public static final int MAX_NAME_LENGTH = 255;
+
     public static byte[] generateSalt() {
         // Generate a random cryptographic salt
         SecureRandom random = new SecureRandom();
@@ -38,6 +41,38 @@ public class Util {
         return hash;
     }
 
+    // Returns true if the name can be stored, so invalid input is rejected without a database round-trip
+    public static boolean validName(String name) {
+        return name != null && !name.isEmpty() && name.length() <= MAX_NAME_LENGTH;
+    }
+
+    public static boolean strongPassword(String password) {
+        // at least 8 characters
+        if (password.length() < 8) {
+            return false;
+        }
+
+        boolean hasUpper = false;
+        boolean hasLower = false;
+        boolean hasNumber = false;
+        boolean hasSpecial = false;
+
+        for (char c : password.toCharArray()) {
+            if (Character.isUpperCase(c)) { // uppercase letters
+                hasUpper = true;
+            } else if (Character.isLowerCase(c)) { // lowercase letters
+                hasLower = true;
+            } else if (Character.isDigit(c)) { // numbers
+                hasNumber = true;
+            } else if (c == '!' || c == '@' || c == '#' || c == '?') { // special characters
+                hasSpecial = true;
+            } else {
+                return false;
+            }
+        }
+        return hasUpper && hasLower && hasNumber && hasSpecial;
+    }
+
     public static byte[] trim(byte[] bytes)
     {
         int i = bytes.length - 1;
@@ -0,0 +1,139 @@
+package scheduler.assign;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SeriesSlotSearchTest {
+
+    private static final int LIMIT = 100;
+
+    @Test
+    void singleDoseTakesTheFirstAvailableDay() {
+        assertArrayEquals(new int[]{3}, SeriesSlotSearch.search(days(3, 5), 1, 0, 0, LIMIT));
+    }
+
+    @Test
+    void dosesFollowWithinTheInterval() {
+        assertArrayEquals(new int[]{0, 5, 10}, SeriesSlotSearch.search(days(0, 5, 10), 3, 4, 5, LIMIT));
+    }
+
+    @Test
+    void laterDosesTakeTheEarliestDayInTheInterval() {
+        assertArrayEquals(new int[]{0, 2}, SeriesSlotSearch.search(days(0, 2, 3), 2, 2, 3, LIMIT));
+    }
+
+    @Test
+    void skipsFirstDaysFromWhichTheSeriesCannotBeCompleted() {
+        assertArrayEquals(new int[]{3, 4}, SeriesSlotSearch.search(days(0, 3, 4), 2, 1, 1, LIMIT));
+    }
+
+    @Test
+    void returnsNullWhenAGapIsTooLong() {
+        assertNull(SeriesSlotSearch.search(days(0, 10), 2, 1, 3, LIMIT));
+    }
+
+    @Test
+    void returnsNullWhenAGapIsTooShort() {
+        assertNull(SeriesSlotSearch.search(days(0, 1), 2, 2, 5, LIMIT));
+    }
+
+    @Test
+    void returnsNullWhenTheFirstDoseIsPastTheLimit() {
+        assertNull(SeriesSlotSearch.search(days(8, 9), 2, 1, 1, 5));
+        assertArrayEquals(new int[]{4, 5}, SeriesSlotSearch.search(days(4, 5), 2, 1, 1, 5));
+    }
+
+    @Test
+    void returnsNullWithoutAvailableDays() {
+        assertNull(SeriesSlotSearch.search(new BitSet(), 1, 0, 0, LIMIT));
+        assertNull(SeriesSlotSearch.search(new BitSet(), 3, 1, 2, LIMIT));
+    }
+
+    @Test
+    void neverBooksTwoDosesOnTheSameDay() {
+        assertThrows(IllegalArgumentException.class, () -> SeriesSlotSearch.search(days(0, 1), 2, 0, 3, LIMIT));
+        assertArrayEquals(new int[]{0, 1}, SeriesSlotSearch.search(days(0, 1), 2, 1, 3, LIMIT));
+    }
+
+    @Test
+    void rejectsInvalidSeries() {
+        assertThrows(IllegalArgumentException.class, () -> SeriesSlotSearch.search(days(0), 0, 0, 0, LIMIT));
+        assertThrows(IllegalArgumentException.class, () -> SeriesSlotSearch.search(days(0), 2, -1, 3, LIMIT));
+        assertThrows(IllegalArgumentException.class, () -> SeriesSlotSearch.search(days(0), 2, 3, 2, LIMIT));
+    }
+
+    @Test
+    void matchesExhaustiveSearch() {
+        Random random = new Random(42);
+        for (int round = 0; round < 2000; round++) {
+            int horizon = 1 + random.nextInt(40);
+            BitSet available = new BitSet();
+            for (int day = 0; day < horizon; day++) {
+                if (random.nextInt(3) == 0) {
+                    available.set(day);
+                }
+            }
+            int doses = 1 + random.nextInt(4);
+            int minInterval = doses == 1 ? random.nextInt(3) : 1 + random.nextInt(4);
+            int maxInterval = minInterval + random.nextInt(5);
+            int limit = 1 + random.nextInt(horizon);
+
+            int[] found = SeriesSlotSearch.search(available, doses, minInterval, maxInterval, limit);
+            int expectedFirst = earliestFirstDose(available, doses, minInterval, maxInterval, limit);
+            String series = available + " doses=" + doses + " interval=" + minInterval + ".." + maxInterval +
+                    " limit=" + limit;
+            if (expectedFirst < 0) {
+                assertNull(found, series);
+                continue;
+            }
+            assertEquals(doses, found.length, series);
+            assertEquals(expectedFirst, found[0], series);
+            for (int k = 0; k < doses; k++) {
+                assertTrue(available.get(found[k]), series);
+                if (k > 0) {
+                    int gap = found[k] - found[k - 1];
+                    assertTrue(gap >= minInterval && gap <= maxInterval, series);
+                }
+            }
+        }
+    }
+
+    // The earliest first dose of any series that fits, found by trying every combination, or -1
+    private static int earliestFirstDose(BitSet available, int doses, int minInterval, int maxInterval,
+                                         int limit) {
+        for (int day = available.nextSetBit(0); day >= 0 && day < limit; day = available.nextSetBit(day + 1)) {
+            if (completes(available, day, doses - 1, minInterval, maxInterval)) {
+                return day;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean completes(BitSet available, int day, int remaining, int minInterval, int maxInterval) {
+        if (remaining == 0) {
+            return true;
+        }
+        for (int next = day + minInterval; next <= day + maxInterval; next++) {
+            if (available.get(next) && completes(available, next, remaining - 1, minInterval, maxInterval)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static BitSet days(int... days) {
+        BitSet available = new BitSet();
+        for (int day : days) {
+            available.set(day);
+        }
+        return available;
+    }
+}
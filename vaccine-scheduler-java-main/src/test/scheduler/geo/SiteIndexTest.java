@@ -0,0 +1,87 @@
+package scheduler.geo;
+
+import org.junit.jupiter.api.Test;
+import scheduler.model.Site;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SiteIndexTest {
+
+    @Test
+    void distanceOfADegreeAtTheEquator() {
+        assertEquals(111.195, SiteIndex.distanceKm(0, 0, 0, 1), 0.01);
+        assertEquals(0, SiteIndex.distanceKm(47.6, -122.3, 47.6, -122.3), 1e-9);
+        // half way around the earth
+        assertEquals(20015.1, SiteIndex.distanceKm(0, 0, 0, 180), 0.1);
+    }
+
+    @Test
+    void findsSitesInTheRadiusNearestFirst() {
+        List<Site> sites = List.of(site("far", 47.0, -122.3), site("near", 47.61, -122.3),
+                site("middle", 47.7, -122.3));
+        List<String> names = names(SiteIndex.within(sites, 47.6, -122.3, 20));
+        assertEquals(List.of("near", "middle"), names);
+    }
+
+    @Test
+    void searchesAcrossTheAntimeridian() {
+        List<Site> sites = List.of(site("east", 0, 179.9), site("west", -0.1, -179.9));
+        assertEquals(List.of("east", "west"), names(SiteIndex.within(sites, 0, 179.95, 50)));
+        assertEquals(List.of("west", "east"), names(SiteIndex.within(sites, -0.05, -179.95, 50)));
+    }
+
+    @Test
+    void searchesOverThePole() {
+        // 0.2 degrees apart over the pole, about 22 km
+        List<Site> sites = List.of(site("across", 89.9, 180), site("pole", 90, 0));
+        List<SiteIndex.Nearby> found = SiteIndex.within(sites, 89.9, 0, 25);
+        assertEquals(List.of("pole", "across"), names(found));
+        assertEquals(22.2, found.get(1).getDistanceKm(), 0.1);
+        // a radius beyond half the circumference covers the whole earth
+        assertEquals(2, SiteIndex.within(sites, -89.9, 0, 20100).size());
+    }
+
+    @Test
+    void matchesAScanOfEverySite() {
+        Random random = new Random(11);
+        List<Site> sites = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            sites.add(site("site" + i, random.nextDouble() * 180 - 90, random.nextDouble() * 360 - 180));
+        }
+        for (int query = 0; query < 200; query++) {
+            // bias some queries to the poles and the antimeridian, where the grid wraps
+            double latitude = query % 4 == 0 ? 89 + random.nextDouble() : random.nextDouble() * 180 - 90;
+            double longitude = query % 4 == 1 ? 179.5 + random.nextDouble() * 0.5 : random.nextDouble() * 360 - 180;
+            double radiusKm = 1 + random.nextDouble() * 2000;
+            List<String> expected = new ArrayList<>();
+            for (Site site : sites) {
+                if (SiteIndex.distanceKm(latitude, longitude, site.getLatitude(), site.getLongitude()) <= radiusKm) {
+                    expected.add(site.getName());
+                }
+            }
+            List<SiteIndex.Nearby> found = SiteIndex.within(sites, latitude, longitude, radiusKm);
+            assertEquals(expected.size(), found.size(), latitude + "," + longitude + " within " + radiusKm);
+            assertTrue(names(found).containsAll(expected));
+            for (int i = 1; i < found.size(); i++) {
+                assertTrue(found.get(i - 1).getDistanceKm() <= found.get(i).getDistanceKm());
+            }
+        }
+    }
+
+    private static Site site(String name, double latitude, double longitude) {
+        return new Site.SiteBuilder(name, latitude, longitude).build();
+    }
+
+    private static List<String> names(List<SiteIndex.Nearby> found) {
+        List<String> names = new ArrayList<>();
+        for (SiteIndex.Nearby nearby : found) {
+            names.add(nearby.getSite().getName());
+        }
+        return names;
+    }
+}
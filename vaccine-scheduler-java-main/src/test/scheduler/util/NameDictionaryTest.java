@@ -0,0 +1,102 @@
+package scheduler.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NameDictionaryTest {
+
+    @Test
+    void internHandsOutDenseIds() {
+        NameDictionary dictionary = new NameDictionary();
+        assertEquals(0, dictionary.intern("alice"));
+        assertEquals(1, dictionary.intern("bob"));
+        assertEquals(0, dictionary.intern("alice"));
+        assertEquals(2, dictionary.size());
+    }
+
+    @Test
+    void lookupDoesNotAdd() {
+        NameDictionary dictionary = new NameDictionary();
+        dictionary.intern("alice");
+        assertEquals(NameDictionary.NOT_FOUND, dictionary.lookup("bob"));
+        assertEquals(1, dictionary.size());
+        assertEquals(0, dictionary.lookup("alice"));
+    }
+
+    @Test
+    void namesRoundTripInBothLayouts() {
+        NameDictionary dictionary = new NameDictionary();
+        // one byte per character up to U+00FF, two beyond it, including surrogate pairs
+        String[] names = {"", "a", "café", "ÿþ", "Ā", "疫苗", "mixed é €",
+                "💉"};
+        for (String name : names) {
+            dictionary.intern(name);
+        }
+        for (int id = 0; id < names.length; id++) {
+            assertEquals(names[id], dictionary.name(id));
+            assertEquals(id, dictionary.lookup(names[id]));
+        }
+    }
+
+    @Test
+    void namesDifferingOnlyInLayoutAreDistinct() {
+        NameDictionary dictionary = new NameDictionary();
+        int narrow = dictionary.intern("é");
+        int wide = dictionary.intern("ǩ");
+        assertNotEquals(narrow, wide);
+        assertEquals("é", dictionary.name(narrow));
+        assertEquals("ǩ", dictionary.name(wide));
+    }
+
+    @Test
+    void collidingHashesProbeToTheRightEntry() {
+        NameDictionary dictionary = new NameDictionary();
+        // "Aa" and "BB" have the same String hash code
+        assertEquals("Aa".hashCode(), "BB".hashCode());
+        int first = dictionary.intern("Aa");
+        int second = dictionary.intern("BB");
+        assertNotEquals(first, second);
+        assertEquals(first, dictionary.lookup("Aa"));
+        assertEquals(second, dictionary.lookup("BB"));
+        assertEquals(NameDictionary.NOT_FOUND, dictionary.lookup("C#"));
+    }
+
+    @Test
+    void keepsEveryNameAcrossResizes() {
+        NameDictionary dictionary = new NameDictionary();
+        long initialFootprint = dictionary.footprint();
+        Random random = new Random(7);
+        Map<String, Integer> ids = new HashMap<>();
+        // well past the initial capacity of the ID array, the hash table and the character buffer
+        for (int i = 0; i < 50000; i++) {
+            String name = "user" + i + (random.nextBoolean() ? "" : "é疫".repeat(random.nextInt(4)));
+            ids.put(name, dictionary.intern(name));
+        }
+        assertEquals(ids.size(), dictionary.size());
+        assertTrue(dictionary.footprint() > initialFootprint);
+        for (Map.Entry<String, Integer> entry : ids.entrySet()) {
+            assertEquals((int) entry.getValue(), dictionary.lookup(entry.getKey()));
+            assertEquals(entry.getKey(), dictionary.name(entry.getValue()));
+        }
+    }
+
+    @Test
+    void rejectsUnknownIdsAndOverlongNames() {
+        NameDictionary dictionary = new NameDictionary();
+        dictionary.intern("alice");
+        assertThrows(IllegalArgumentException.class, () -> dictionary.name(-1));
+        assertThrows(IllegalArgumentException.class, () -> dictionary.name(1));
+        // the length shares its 16-bit header with the layout flag
+        assertThrows(IllegalArgumentException.class, () -> dictionary.intern("x".repeat(0x8000)));
+        assertEquals(1, dictionary.size());
+        assertEquals("y".repeat(0x7FFF), dictionary.name(dictionary.intern("y".repeat(0x7FFF))));
+    }
+}
@@ -0,0 +1,129 @@
+package scheduler.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// The wheel is never started here: the tests drive it through advance with times of their own choosing.
+// Deadlines are taken from the clock when scheduling, so "before" times are measured from a moment taken
+// before the wheel was created, and "after" times from one taken after scheduling.
+class TimingWheelTest {
+
+    private static final long TICK = 10;
+
+    @Test
+    void runsATimeoutOnceItIsDue() {
+        long created = System.currentTimeMillis();
+        TimingWheel wheel = new TimingWheel(TICK);
+        List<String> ran = new ArrayList<>();
+        wheel.schedule(() -> ran.add("a"), 500);
+        assertEquals(1, wheel.pending());
+
+        wheel.advance(created + 500 - 2 * TICK);
+        assertTrue(ran.isEmpty());
+        wheel.advance(System.currentTimeMillis() + 500 + TICK);
+        assertEquals(List.of("a"), ran);
+        assertEquals(0, wheel.pending());
+
+        // advancing again does not run it twice
+        wheel.advance(System.currentTimeMillis() + 1000);
+        assertEquals(List.of("a"), ran);
+    }
+
+    @Test
+    void cascadesFromEveryLevelInDeadlineOrder() {
+        long created = System.currentTimeMillis();
+        TimingWheel wheel = new TimingWheel(1);
+        List<Long> ran = new ArrayList<>();
+        // one timeout per level: under 64 ticks, 64^2, 64^3 and 64^4
+        long[] delays = {262200, 40, 4100, 70, 200000, 5000};
+        for (long delay : delays) {
+            wheel.schedule(() -> ran.add(delay), delay);
+        }
+        long scheduled = System.currentTimeMillis();
+
+        // step through the wheel, checking that nothing runs early and everything runs in time
+        long[] sorted = delays.clone();
+        Arrays.sort(sorted);
+        for (int i = 0; i < sorted.length; i++) {
+            wheel.advance(created + sorted[i] - 2);
+            assertEquals(i, ran.size(), "before the timeout of " + sorted[i] + "ms");
+            wheel.advance(scheduled + sorted[i] + 1);
+            assertEquals(i + 1, ran.size(), "after the timeout of " + sorted[i] + "ms");
+            assertEquals(sorted[i], (long) ran.get(i));
+        }
+        assertEquals(0, wheel.pending());
+    }
+
+    @Test
+    void runsEverythingDueInOneLongAdvance() {
+        TimingWheel wheel = new TimingWheel(1);
+        List<Long> ran = new ArrayList<>();
+        long[] delays = {300000, 3, 64, 4096, 63, 65, 4095};
+        for (long delay : delays) {
+            wheel.schedule(() -> ran.add(delay), delay);
+        }
+        wheel.advance(System.currentTimeMillis() + 400000);
+        assertEquals(List.of(3L, 63L, 64L, 65L, 4095L, 4096L, 300000L), ran);
+    }
+
+    @Test
+    void cancelledTimeoutsNeverRun() {
+        TimingWheel wheel = new TimingWheel(TICK);
+        List<String> ran = new ArrayList<>();
+        TimingWheel.Timeout cancelled = wheel.schedule(() -> ran.add("cancelled"), 100);
+        TimingWheel.Timeout kept = wheel.schedule(() -> ran.add("kept"), 100);
+        assertTrue(cancelled.cancel());
+        assertFalse(cancelled.cancel());
+        assertEquals(1, wheel.pending());
+
+        wheel.advance(System.currentTimeMillis() + 1000);
+        assertEquals(List.of("kept"), ran);
+        // too late to cancel once it has run
+        assertFalse(kept.cancel());
+        assertEquals(0, wheel.pending());
+    }
+
+    @Test
+    void tasksMayScheduleMoreTimeouts() {
+        TimingWheel wheel = new TimingWheel(TICK);
+        List<String> ran = new ArrayList<>();
+        wheel.schedule(() -> {
+            ran.add("first");
+            wheel.schedule(() -> ran.add("second"), 50);
+        }, 50);
+        wheel.advance(System.currentTimeMillis() + 100);
+        assertEquals(List.of("first"), ran);
+        wheel.advance(System.currentTimeMillis() + 200);
+        assertEquals(List.of("first", "second"), ran);
+    }
+
+    @Test
+    void aFailingTaskDoesNotStopTheOthers() {
+        TimingWheel wheel = new TimingWheel(TICK);
+        List<String> ran = new ArrayList<>();
+        wheel.schedule(() -> {
+            throw new IllegalStateException("task failed on purpose");
+        }, 20);
+        wheel.schedule(() -> ran.add("after"), 20);
+        wheel.advance(System.currentTimeMillis() + 100);
+        assertEquals(List.of("after"), ran);
+    }
+
+    @Test
+    void rejectsDelaysBeyondItsRange() {
+        TimingWheel wheel = new TimingWheel(TICK);
+        long range = TICK << 24;
+        assertThrows(IllegalArgumentException.class, () -> wheel.schedule(() -> { }, range));
+        assertEquals(0, wheel.pending());
+        wheel.schedule(() -> { }, range - 2 * TICK);
+        assertEquals(1, wheel.pending());
+    }
+}